@@ -0,0 +1,150 @@
+package tl15.huffman;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import tl15.utils.BitInputStream;
+import tl15.utils.BitOutputStream;
+import static tl15.utils.Math.min;
+
+/**
+ * Single pass (de)compression by adaptive Huffman coding.
+ *
+ * Both the compressor and the decompressor start from a model where every
+ * character is equally likely. The model counts the characters it has seen
+ * and rebuilds its codes every now and then, first often and later more
+ * rarely. Since the decompressor sees the same characters in the same order,
+ * it rebuilds exactly the same codes at exactly the same points, so no code
+ * table has to be stored at all and the input is read only once.
+ *
+ * The end of the data is marked by a special character, so the input size
+ * need not be known in advance.
+ */
+public class AdaptiveHuffman {
+    /** The character marking the end of the data. */
+    private static final int endOfData = 256;
+
+    /** The length limit of the codes, keeping the decoding tables small. */
+    private static final int maxCodeLength = 15;
+
+    /** How many characters to process before the first rebuild. */
+    private static final int firstRebuildInterval = 64;
+
+    /** The longest interval between two rebuilds. */
+    private static final int maxRebuildInterval = 16384;
+
+    /** When the counts add up to this, they are halved to forget old statistics. */
+    private static final int maxTotalCount = 1 << 20;
+
+    /**
+     * The adaptive model shared by the compressor and the decompressor.
+     */
+    private static class Model {
+        private final int[] counts = new int[endOfData + 1];
+        private int totalCount = 0;
+        private int rebuildInterval = firstRebuildInterval;
+        private int untilRebuild = firstRebuildInterval;
+        private HuffmanCodeTable table;
+
+        Model() {
+            for (int c = 0; c < counts.length; ++c) {
+                counts[c] = 1;
+            }
+            totalCount = counts.length;
+            table = Huffman.canonicalCodes(counts, maxCodeLength);
+        }
+
+        /**
+         * Count a character.
+         * @param c The character.
+         * @return True if the codes were rebuilt.
+         */
+        boolean update(int c) {
+            ++counts[c];
+            ++totalCount;
+            if (--untilRebuild > 0) {
+                return false;
+            }
+            if (totalCount >= maxTotalCount) {
+                totalCount = 0;
+                for (int i = 0; i < counts.length; ++i) {
+                    counts[i] = (counts[i] + 1) / 2;
+                    totalCount += counts[i];
+                }
+            }
+            table = Huffman.canonicalCodes(counts, maxCodeLength);
+            rebuildInterval = min(2 * rebuildInterval, maxRebuildInterval);
+            untilRebuild = rebuildInterval;
+            return true;
+        }
+    }
+
+    /**
+     * Compress ins into outs. The output stream is not flushed.
+     * @param ins The input data. All remaining data is consumed.
+     * @param outs The bit stream to write the compressed data to.
+     * @throws IOException
+     */
+    public static void compress(InputStream ins, BitOutputStream outs) throws IOException {
+        Model model = new Model();
+        long inBytes = 0;
+        int b;
+        while ((b = ins.read()) != -1) {
+            outs.writeBits(model.table.lengths[b], model.table.codes[b]);
+            model.update(b);
+            ++inBytes;
+        }
+        outs.writeBits(model.table.lengths[endOfData], model.table.codes[endOfData]);
+
+        System.out.println("Compressed/original (no headers) = " + 100 * (outs.getBitCount() / 8.0) / inBytes + "%");
+    }
+
+    /**
+     * Decompress ins into outs. The output stream is not flushed.
+     * @param ins The input bits. Must be something produced by compress().
+     * @param outs The stream to append the decompressed data to.
+     * @throws IOException
+     */
+    public static void decompress(BitInputStream ins, OutputStream outs) throws IOException {
+        Model model = new Model();
+        HuffmanDecodeTable decodeTable = new HuffmanDecodeTable(model.table);
+        int c;
+        while ((c = decodeTable.decode(ins)) != endOfData) {
+            outs.write(c);
+            if (model.update(c)) {
+                decodeTable = new HuffmanDecodeTable(model.table);
+            }
+        }
+    }
+
+    private static final int headerMagik = ('T' << 24) | ('L' << 16) | (1 << 8) | 7;
+
+    /**
+     * Compress a file into another file. The input is read only once, so it
+     * need not be resettable.
+     * @param ins Input stream.
+     * @param outs Output stream. Will contain a header.
+     * @throws IOException
+     */
+    public static void compressFile(InputStream ins, OutputStream outs) throws IOException {
+        BitOutputStream bouts = new BitOutputStream(outs);
+        bouts.writeBits(32, headerMagik);
+        compress(ins, bouts);
+        bouts.flush();
+    }
+
+    /**
+     * Decompress a file into another file.
+     * @param ins Input stream. Must contain a header.
+     * @param outs Output stream.
+     * @throws IOException
+     */
+    public static void decompressFile(InputStream ins, OutputStream outs) throws IOException {
+        BitInputStream bins = new BitInputStream(ins);
+        int magik = (bins.bitsRemaining(32) == 32)? bins.readBitsInt(32) : 0;
+        if (magik != headerMagik) {
+            throw new IllegalArgumentException("Bad file.");
+        }
+        decompress(bins, outs);
+    }
+}
@@ -0,0 +1,211 @@
+package tl15.huffman;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import tl15.utils.BitInputStream;
+import tl15.utils.BitOutputStream;
+import static tl15.utils.Math.max;
+
+/**
+ * Methods implementing (de)compression by order-1 context Huffman coding.
+ *
+ * Each byte is coded with a Huffman code chosen by the byte preceding it (the
+ * context), which captures e.g. the letter pairs of text much better than a
+ * single code for the whole file. Contexts which occur only rarely would cost
+ * more in code lengths than they save, so they are clustered together and
+ * share one code.
+ *
+ * The codes of all the contexts are kept in flat arrays indexed by
+ * <code>256 * cluster + byte</code>, so choosing the code costs just one more
+ * array lookup per byte.
+ */
+public class ContextHuffman {
+    /** Contexts occurring fewer times than this share the code of cluster 0. */
+    private static final int minContextCount = 1024;
+
+    /** The length limit of the codes, keeping the decoding tables small. */
+    private static final int maxCodeLength = 15;
+
+    private static final int headerMagik = ('T' << 24) | ('L' << 16) | (1 << 8) | 8;
+
+    /**
+     * Count the bytes of the input in each context.
+     * @param ins The input stream. All remaining data is consumed.
+     * @return An array where the element with index <code>256 * a + b</code>
+     *         tells how many times the byte b follows the byte a. The first
+     *         byte of the input is counted as following the byte 0.
+     * @throws IOException
+     */
+    private static int[] calculateFrequencies(InputStream ins) throws IOException {
+        int[] freqs = new int[256 * 256];
+        int previous = 0;
+        int b;
+        while ((b = ins.read()) != -1) {
+            ++freqs[(previous << 8) | b];
+            previous = b;
+        }
+        return freqs;
+    }
+
+    /**
+     * Assign the contexts to clusters. Cluster 0 is shared by the rare
+     * contexts, the others have a context each.
+     * @param freqs The frequencies from calculateFrequencies().
+     * @return An array telling the cluster of each context.
+     */
+    private static int[] clusterContexts(int[] freqs) {
+        int[] clusters = new int[256];
+        int nextCluster = 1;
+        for (int context = 0; context < 256; ++context) {
+            int count = 0;
+            for (int b = 0; b < 256; ++b) {
+                count += freqs[(context << 8) | b];
+            }
+            clusters[context] = (count >= minContextCount)? nextCluster++ : 0;
+        }
+        return clusters;
+    }
+
+    /**
+     * Build the canonical codes of each cluster.
+     * @param freqs The frequencies from calculateFrequencies().
+     * @param clusters The clusters from clusterContexts().
+     * @return The codes of each cluster.
+     */
+    private static HuffmanCodeTable[] buildCodes(int[] freqs, int[] clusters) {
+        int clusterCount = 1;
+        for (int cluster : clusters) {
+            clusterCount = max(clusterCount, cluster + 1);
+        }
+        int[][] clusterFreqs = new int[clusterCount][256];
+        for (int context = 0; context < 256; ++context) {
+            for (int b = 0; b < 256; ++b) {
+                clusterFreqs[clusters[context]][b] += freqs[(context << 8) | b];
+            }
+        }
+        HuffmanCodeTable[] codes = new HuffmanCodeTable[clusterCount];
+        for (int cluster = 0; cluster < clusterCount; ++cluster) {
+            codes[cluster] = Huffman.canonicalCodes(clusterFreqs[cluster], maxCodeLength);
+        }
+        return codes;
+    }
+
+    /**
+     * Compress a list of bytes.
+     * @param ins The input data. All remaining data is consumed.
+     * @param clusters The cluster of each context.
+     * @param codes The codes of each cluster.
+     * @param outs The bit stream to write the compressed data to.
+     * @throws IOException
+     */
+    public static void compress(InputStream ins, int[] clusters, HuffmanCodeTable[] codes, BitOutputStream outs) throws IOException {
+        long[] flatCodes = new long[256 * codes.length];
+        int[] flatLengths = new int[256 * codes.length];
+        for (int cluster = 0; cluster < codes.length; ++cluster) {
+            System.arraycopy(codes[cluster].codes, 0, flatCodes, 256 * cluster, 256);
+            System.arraycopy(codes[cluster].lengths, 0, flatLengths, 256 * cluster, 256);
+        }
+        int[] contextBase = new int[256];
+        for (int context = 0; context < 256; ++context) {
+            contextBase[context] = 256 * clusters[context];
+        }
+
+        long inBytes = 0;
+        int previous = 0;
+        int b;
+        while ((b = ins.read()) != -1) {
+            int i = contextBase[previous] + b;
+            outs.writeBits(flatLengths[i], flatCodes[i]);
+            previous = b;
+            ++inBytes;
+        }
+
+        System.out.println("Compressed/original (no headers) = " + 100 * (outs.getBitCount() / 8.0) / inBytes + "%");
+    }
+
+    /**
+     * Decompress a list of bits.
+     * @param ins The input bits. Must be something produced by compress().
+     * @param clusters The cluster of each context.
+     * @param codes The codes of each cluster.
+     * @param size The number of bytes in the original input.
+     * @param outs The stream to append the decompressed data to.
+     * @throws IOException
+     */
+    public static void decompress(BitInputStream ins, int[] clusters, HuffmanCodeTable[] codes, long size, OutputStream outs) throws IOException {
+        HuffmanDecodeTable decodeTable = new HuffmanDecodeTable(codes);
+        int previous = 0;
+        for (long i = 0; i < size; ++i) {
+            previous = decodeTable.decode(ins, clusters[previous]);
+            outs.write(previous);
+        }
+    }
+
+    /**
+     * Compress a file into another file. The header consists of:
+     *  - the four headerMagik bytes
+     *  - the size of the original data as an 8-byte integer
+     *  - one bit for each context telling whether it has a code of its own
+     *  - the code lengths of cluster 0 and then of the contexts with a code
+     *    of their own, in order
+     * @param ins Input stream. Must be resettable.
+     * @param outs Output stream. Will contain a header.
+     * @throws IOException
+     */
+    public static void compressFile(InputStream ins, OutputStream outs) throws IOException {
+        if (!ins.markSupported()) {
+            throw new IllegalArgumentException("input stream must support mark");
+        }
+        ins.mark(Integer.MAX_VALUE);
+        int[] freqs = calculateFrequencies(ins);
+        ins.reset();
+
+        long size = 0;
+        for (int f : freqs) {
+            size += f;
+        }
+        int[] clusters = clusterContexts(freqs);
+        HuffmanCodeTable[] codes = buildCodes(freqs, clusters);
+
+        BitOutputStream bouts = new BitOutputStream(outs);
+        bouts.writeBits(32, headerMagik);
+        bouts.writeBits(64, size);
+        for (int context = 0; context < 256; ++context) {
+            bouts.writeBits(1, (clusters[context] != 0)? 1 : 0);
+        }
+        for (HuffmanCodeTable table : codes) {
+            table.writeLengths(bouts);
+        }
+        compress(ins, clusters, codes, bouts);
+        bouts.flush();
+
+        System.out.println("Using " + (codes.length - 1) + " context codes");
+        System.out.println("Compressed/original = " + 100 * (bouts.getBitCount() / 8.0) / size + " %");
+    }
+
+    /**
+     * Decompress a file into another file.
+     * @param ins Input stream. Must contain a header.
+     * @param outs Output stream.
+     * @throws IOException
+     */
+    public static void decompressFile(InputStream ins, OutputStream outs) throws IOException {
+        BitInputStream bins = new BitInputStream(ins);
+        int magik = (bins.bitsRemaining(32) == 32)? bins.readBitsInt(32) : 0;
+        if (magik != headerMagik) {
+            throw new IllegalArgumentException("Bad file.");
+        }
+        long size = ((long)bins.readBitsInt(32) << 32) | (bins.readBitsInt(32) & 0xffffffffL);
+        int[] clusters = new int[256];
+        int nextCluster = 1;
+        for (int context = 0; context < 256; ++context) {
+            clusters[context] = (bins.readBitsInt(1) != 0)? nextCluster++ : 0;
+        }
+        HuffmanCodeTable[] codes = new HuffmanCodeTable[nextCluster];
+        for (int cluster = 0; cluster < nextCluster; ++cluster) {
+            codes[cluster] = HuffmanCodeTable.readCanonical(bins, 256);
+        }
+        decompress(bins, clusters, codes, size, outs);
+    }
+}
@@ -0,0 +1,197 @@
+package tl15.huffman;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Methods for counting the frequencies of bytes quickly.
+ *
+ * Inside one thread the counts are kept in four interleaved banks: consecutive
+ * bytes go to different banks, so a run of equal bytes does not make every
+ * increment wait for the previous store to the same counter. Big inputs are
+ * split between the threads of a fork-join pool and the per-thread counts are
+ * added up at the end.
+ */
+public class Histogram {
+    /** Inputs smaller than this are counted in one thread. */
+    private static final int parallelThreshold = 1 << 20;
+
+    /** The largest part of a file mapped into memory at a time. */
+    private static final int mapWindowSize = 1 << 30;
+
+    private static final ForkJoinPool pool = new ForkJoinPool();
+
+    /**
+     * Count bytes from an array in the calling thread.
+     * @param data The array.
+     * @param offset The index of the first byte to count.
+     * @param length The number of bytes to count.
+     * @return An array where the element with index <code>i</code> is the
+     *         number of times the byte <code>i</code> occurs.
+     */
+    public static int[] count(byte[] data, int offset, int length) {
+        int[] bank0 = new int[256];
+        int[] bank1 = new int[256];
+        int[] bank2 = new int[256];
+        int[] bank3 = new int[256];
+        int i = offset;
+        int end = offset + length;
+        for (; i + 4 <= end; i += 4) {
+            ++bank0[data[i] & 0xff];
+            ++bank1[data[i + 1] & 0xff];
+            ++bank2[data[i + 2] & 0xff];
+            ++bank3[data[i + 3] & 0xff];
+        }
+        for (; i < end; ++i) {
+            ++bank0[data[i] & 0xff];
+        }
+        return merge(bank0, bank1, bank2, bank3);
+    }
+
+    /**
+     * Count bytes from a buffer in the calling thread. The position of the
+     * buffer is not changed.
+     * @param data The buffer. The bytes between its position and limit are counted.
+     * @return The counts.
+     * @see #count(byte[], int, int)
+     */
+    public static int[] count(ByteBuffer data) {
+        int[] bank0 = new int[256];
+        int[] bank1 = new int[256];
+        int[] bank2 = new int[256];
+        int[] bank3 = new int[256];
+        int i = data.position();
+        int end = data.limit();
+        for (; i + 4 <= end; i += 4) {
+            ++bank0[data.get(i) & 0xff];
+            ++bank1[data.get(i + 1) & 0xff];
+            ++bank2[data.get(i + 2) & 0xff];
+            ++bank3[data.get(i + 3) & 0xff];
+        }
+        for (; i < end; ++i) {
+            ++bank0[data.get(i) & 0xff];
+        }
+        return merge(bank0, bank1, bank2, bank3);
+    }
+
+    /**
+     * Add the counts of several banks together.
+     * @param banks The banks. The result is stored in the first one.
+     * @return The first bank.
+     */
+    private static int[] merge(int[]... banks) {
+        for (int b = 1; b < banks.length; ++b) {
+            for (int c = 0; c < 256; ++c) {
+                banks[0][c] += banks[b][c];
+            }
+        }
+        return banks[0];
+    }
+
+    /**
+     * A task counting a part of an array or a buffer, splitting itself in
+     * halves until the parts are small enough.
+     */
+    private static class CountTask extends RecursiveTask<int[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] array;
+        private final ByteBuffer buffer;
+        private final int offset;
+        private final int length;
+
+        CountTask(byte[] array, ByteBuffer buffer, int offset, int length) {
+            this.array = array;
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (length <= parallelThreshold) {
+                if (array != null) {
+                    return count(array, offset, length);
+                }
+                ByteBuffer part = buffer.duplicate();
+                part.limit(offset + length);
+                part.position(offset);
+                return count(part);
+            }
+            int half = length / 2;
+            CountTask first = new CountTask(array, buffer, offset, half);
+            CountTask second = new CountTask(array, buffer, offset + half, length - half);
+            first.fork();
+            return merge(second.compute(), first.join());
+        }
+    }
+
+    /**
+     * Count bytes from an array using all processors.
+     * @see #count(byte[], int, int)
+     */
+    public static int[] countParallel(byte[] data, int offset, int length) {
+        if (length <= parallelThreshold) {
+            return count(data, offset, length);
+        }
+        return pool.invoke(new CountTask(data, null, offset, length));
+    }
+
+    /**
+     * Count bytes from a buffer, e.g. a memory-mapped file, using all
+     * processors. The position of the buffer is not changed.
+     * @see #count(ByteBuffer)
+     */
+    public static int[] countParallel(ByteBuffer data) {
+        if (data.remaining() <= parallelThreshold) {
+            return count(data);
+        }
+        return pool.invoke(new CountTask(null, data, data.position(), data.remaining()));
+    }
+
+    /**
+     * Count the bytes of a file by mapping it into memory piece by piece.
+     * @param channel The file. Its position is not changed.
+     * @return The counts. A file can hold more than 2^31 copies of a byte,
+     *         so they are longs.
+     * @throws IOException
+     */
+    public static long[] count(FileChannel channel) throws IOException {
+        return count(channel, 0);
+    }
+
+    /**
+     * Count the bytes of a file from the given position to the end.
+     * @param channel The file. Its position is not changed.
+     * @param from The position of the first byte to count.
+     * @return The counts.
+     * @throws IOException
+     * @see #count(FileChannel)
+     */
+    public static long[] count(FileChannel channel, long from) throws IOException {
+        long[] counts = new long[256];
+        long size = channel.size();
+        for (long start = from; start < size; start += mapWindowSize) {
+            long length = java.lang.Math.min(mapWindowSize, size - start);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            // a window is small enough for int counts
+            add(counts, countParallel(window));
+        }
+        return counts;
+    }
+
+    /**
+     * Add counts to running totals.
+     * @param totals The totals.
+     * @param counts The counts to add.
+     */
+    static void add(long[] totals, int[] counts) {
+        for (int c = 0; c < counts.length; ++c) {
+            totals[c] += counts[c];
+        }
+    }
+}
@@ -3,42 +3,80 @@ package tl15.huffman;
 import tl15.utils.BitInputStream;
 import tl15.utils.BitOutputStream;
 import tl15.utils.List;
+import tl15.utils.MappedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
+import static tl15.utils.Math.max;
+import static tl15.utils.Math.min;
 
 /**
  * Methods implementing (de)compression by Huffman coding.
  */
 public class Huffman {
+    /** The size of the pieces in which calculateFrequencies() reads its input. */
+    private static final int frequencyChunkSize = 1 << 22;
+
     /**
      * Calculate the frequencies of characters in the input.
-     * @param ins The input stream. All remaining data is consumed.
+     * @param ins The input stream. All remaining data is consumed. A file
+     *            read through a MappedInputStream is counted straight from
+     *            the mapped memory.
      * @return An array where the element with index <code>i</code> is the 
-     *         frequency of the character <code>i</code> in the data.
+     *         frequency of the character <code>i</code> in the data. The
+     *         frequencies can exceed an int in inputs of 2 GB or more.
      * @throws java.io.IOException
+     * @see #scaleFrequencies(long[])
      */
-    private static int[] calculateFrequencies(InputStream ins) throws IOException {
-        int[] freqs = new int[256];
-        int b;
-        while ((b = ins.read()) != -1) {
-            ++freqs[b];
+    static long[] calculateFrequencies(InputStream ins) throws IOException {
+        if (ins instanceof MappedInputStream) {
+            MappedInputStream mapped = (MappedInputStream)ins;
+            long[] freqs = Histogram.count(mapped.getChannel(), mapped.position());
+            mapped.seek(mapped.getChannel().size());
+            return freqs;
+        }
+        long[] freqs = new long[256];
+        // available() is only an estimate for most streams, e.g. 1 for a
+        // GZIPInputStream, but an array stream knows how much is left
+        int chunkSize = frequencyChunkSize;
+        if (ins instanceof ByteArrayInputStream) {
+            chunkSize = min(chunkSize, ins.available());
+        }
+        byte[] chunk = new byte[chunkSize];
+        int size;
+        while ((size = readBlock(ins, chunk)) > 0) {
+            Histogram.add(freqs, Histogram.countParallel(chunk, 0, size));
         }
         return freqs;
     }
 
     /**
      * Build a Huffman tree from the given frequencies.
-     * @param freqs The frequencies. Must be a size 256 array of (non-negative) integers.
+     * @param freqs The frequencies. Must be an array of (non-negative) integers,
+     *              usually of size 256; a bigger array means a bigger alphabet.
      * @return A corresponding Huffman tree.
      */
     private static HuffmanTree buildTree(int[] freqs) {
-        HuffmanTreeNode[] leaves = new HuffmanTreeNode[256];
-        HuffmanHeap q = new HuffmanHeap(256);
+        return buildTree(freqs, false);
+    }
+
+    /**
+     * Build a Huffman tree from the given frequencies.
+     * @param freqs The frequencies.
+     * @param legacyOrder True to build the same tree as the first version,
+     *                    which files with a frequency header were written with.
+     * @return A corresponding Huffman tree.
+     * @see #buildTree(int[])
+     */
+    private static HuffmanTree buildTree(int[] freqs, boolean legacyOrder) {
+        HuffmanTreeNode[] leaves = new HuffmanTreeNode[freqs.length];
+        HuffmanHeap q = new HuffmanHeap(freqs.length, legacyOrder);
 
         // First create the leaf nodes from the given frequencies.
-        for (int b = 0; b < 256; ++b) {
+        for (int b = 0; b < freqs.length; ++b) {
             if (freqs[b] > 0) {
                 HuffmanTreeNode t = new HuffmanTreeNode(freqs[b], null, null, b);
                 leaves[b] = t;
@@ -88,11 +126,24 @@ public class Huffman {
      * @throws java.io.IOException
      */
     public static void compress(InputStream ins, int[] freqs, BitOutputStream outs) throws IOException {
-        HuffmanTree tree = buildTree(freqs);
-        int inBytes = 0;
+        compress(ins, new HuffmanCodeTable(buildTree(freqs)), outs);
+    }
+
+    /**
+     * Compress a list of bytes with the given codes.
+     * 
+     * @param ins The input data. All remaining data is consumed.
+     * @param table The codes. Every character in the input must have a code.
+     * @param outs The bit stream to write the compressed data to.
+     * @throws java.io.IOException
+     */
+    public static void compress(InputStream ins, HuffmanCodeTable table, BitOutputStream outs) throws IOException {
+        long[] codes = table.codes;
+        int[] lengths = table.lengths;
+        long inBytes = 0;
         int b;
         while ((b = ins.read()) != -1) {
-            outs.writeBits(findCode(tree.leaves[b]));
+            outs.writeBits(lengths[b], codes[b]);
             ++inBytes;
         }
 
@@ -109,7 +160,19 @@ public class Huffman {
      */
 
     public static void decompress(BitInputStream bits, int[] freqs, OutputStream outs) throws IOException {
-        HuffmanTree tree = buildTree(freqs);
+        decompress(bits, freqs, buildTree(freqs), outs);
+    }
+
+    /**
+     * Decompress a list of bits with the given tree.
+     * 
+     * @param bits The input bits.
+     * @param freqs The frequencies of the bytes in the original input.
+     * @param tree The tree built from freqs which the bits were coded with.
+     * @param outs The stream to append the decompressed data to.
+     * @throws java.io.IOException
+     */
+    private static void decompress(BitInputStream bits, int[] freqs, HuffmanTree tree, OutputStream outs) throws IOException {
         int inputChars = 0;
         int chr = 0, count = 0;
         
@@ -137,60 +200,171 @@ public class Huffman {
         
         // The original input had at least two different characters so now all
         // codes have a length of at least one bit.
-        int bytesToWrite = sizeFromFreqs(freqs);
-        HuffmanTreeNode node = tree.root;
-        while (bytesToWrite > 0) {
-            int bit = bits.readBits(1);
-//            if (bit == null) {
-//                break;
-//            }
-            if (bit == 0) {
-                node = node.left;
-            } else {
-                node = node.right;
-            }
-            if (node.left == null) {
-                outs.write(node.data);
-                --bytesToWrite;
-                node = tree.root;
-            }
+        decompress(bits, new HuffmanCodeTable(tree), sizeFromFreqs(freqs), outs);
+    }
+
+    /**
+     * Decompress a list of bits with the given codes.
+     * 
+     * @param bits The input bits. Must be something produced by compress().
+     * @param table The codes. At least one character must have a code.
+     * @param size The number of bytes in the original input.
+     * @param outs The stream to append the decompressed data to.
+     * @throws java.io.IOException
+     */
+    public static void decompress(BitInputStream bits, HuffmanCodeTable table, long size, OutputStream outs) throws IOException {
+        HuffmanDecodeTable decodeTable = new HuffmanDecodeTable(table);
+        for (long i = 0; i < size; ++i) {
+            outs.write(decodeTable.decode(bits));
         }
     }
 
     /** Just some random bytes to identify a compressed file. */
     private static final int headerMagik = ('T' << 24) | ('L' << 16) | (1 << 8) | 5;
+
+    /** Identifies a compressed file with a canonical code header. */
+    private static final int canonicalHeaderMagik = ('T' << 24) | ('L' << 16) | (2 << 8) | 5;
+
+    /** Identifies a compressed file consisting of independent blocks. */
+    private static final int blockHeaderMagik = ('T' << 24) | ('L' << 16) | (3 << 8) | 5;
+
+    /** Identifies a compressed file consisting of blocks of interleaved streams. */
+    private static final int interleavedHeaderMagik = ('T' << 24) | ('L' << 16) | (4 << 8) | 5;
+
+    /** The number of streams in an interleaved block. */
+    private static final int interleavedStreams = 4;
     
     /**
-     * Write header information to a stream. The header consists of:
-     *  - the four headerMagik bytes
-     *  - a byte 'n' telling how many entries the following table has
-     *  - a table of 'n' pairs (b,i), where b is a byte and i 4-byte integer 
-     *    expressing the frequency of byte b
-     * @param outs The stream.
-     * @param freqs The frequencies.
+     * Read the frequency table of an old style header from a stream. The
+     * header consists of headerMagik followed by 256 4-byte frequencies.
+     * @param ins The stream, positioned after headerMagik.
+     * @return The frequencies.
      * @throws IOException 
      */
-    private static void writeHeader(BitOutputStream outs, int[] freqs) throws IOException {
-        outs.writeBits(32, headerMagik);
-        for (int freq : freqs) {
-            outs.writeBits(32, freq);
+    private static int[] readFrequencies(BitInputStream ins) throws IOException {
+        int[] freqs = new int[256];
+        for (int i = 0; i < 256; ++i) {
+            freqs[i] = ins.readBitsInt(32);
         }
+        return freqs;
     }
 
     /**
-     * Read header information from a stream.
-     * @see #writeHeader(OutputStream, int[], int)
-     * @param ins The stream.
-     * @return The frequencies.
+     * Write a canonical code header to a stream. The header consists of:
+     *  - the four canonicalHeaderMagik bytes
+     *  - the size of the original data as an 8-byte integer
+     *  - the code lengths
+     * @param outs The stream.
+     * @param size The size of the original data.
+     * @param table The codes. Must be canonical.
      * @throws IOException 
+     * @see HuffmanCodeTable#writeLengths(BitOutputStream)
      */
-    private static int[] readHeader(BitInputStream ins) throws IOException {
-        if (ins.readBits(32) != headerMagik) {
-            throw new IllegalArgumentException("Bad file.");
+    private static void writeHeader(BitOutputStream outs, long size, HuffmanCodeTable table) throws IOException {
+        outs.writeBits(32, canonicalHeaderMagik);
+        outs.writeBits(64, size);
+        table.writeLengths(outs);
+    }
+
+    /**
+     * Calculate the Huffman code lengths for the given frequencies without
+     * building a tree of nodes, so that big alphabets are fast as well. The
+     * characters are sorted by frequency, after which the nodes of the tree
+     * are created in increasing order of weight: the two lightest nodes are
+     * always either the next leaves or the next internal nodes, since the
+     * internal nodes are created in increasing order too. A node is
+     * represented by its index, and the depth of a leaf is found by
+     * following the parents, which always have bigger indices.
+     * @param freqs The frequencies.
+     * @return The code lengths. Characters which do not occur get length 0.
+     */
+    static int[] codeLengths(int[] freqs) {
+        int n = 0;
+        for (int f : freqs) {
+            if (f > 0) {
+                ++n;
+            }
         }
-        int[] freqs = new int[256];
-        for (int i = 0; i < 256; ++i) {
-            freqs[i] = ins.readBits(32);
+        // (frequency << 32) | character, sorted
+        long[] leaves = new long[n];
+        n = 0;
+        for (int c = 0; c < freqs.length; ++c) {
+            if (freqs[c] > 0) {
+                leaves[n++] = ((long)freqs[c] << 32) | c;
+            }
+        }
+        Arrays.sort(leaves);
+
+        int[] lengths = new int[freqs.length];
+        if (n == 1) {
+            lengths[(int)leaves[0]] = 1;
+        }
+        if (n <= 1) {
+            return lengths;
+        }
+
+        // nodes 0..n-1 are the leaves and n..2n-2 the internal nodes
+        long[] weights = new long[2 * n - 1];
+        int[] parents = new int[2 * n - 1];
+        for (int i = 0; i < n; ++i) {
+            weights[i] = leaves[i] >>> 32;
+        }
+        int leaf = 0;
+        int internal = n;
+        for (int node = n; node < 2 * n - 1; ++node) {
+            int a = (leaf < n && (internal == node || weights[leaf] <= weights[internal]))? leaf++ : internal++;
+            int b = (leaf < n && (internal == node || weights[leaf] <= weights[internal]))? leaf++ : internal++;
+            weights[node] = weights[a] + weights[b];
+            parents[a] = node;
+            parents[b] = node;
+        }
+
+        // the depths, reusing parents; the root has depth 0
+        parents[2 * n - 2] = 0;
+        for (int node = 2 * n - 3; node >= 0; --node) {
+            parents[node] = parents[parents[node]] + 1;
+        }
+        for (int i = 0; i < n; ++i) {
+            lengths[(int)leaves[i]] = parents[i];
+        }
+        return lengths;
+    }
+
+    /**
+     * Build canonical codes for the given frequencies. If only one character
+     * occurs, it gets a 1-bit code so that the table is still decodable.
+     * @param freqs The frequencies. The alphabet has one character per
+     *              element, so it can be bigger than the 256 bytes.
+     * @param maxCodeLength The maximum code length, or 0 for no limit.
+     * @return The codes.
+     */
+    public static HuffmanCodeTable canonicalCodes(int[] freqs, int maxCodeLength) {
+        int[] lengths = codeLengths(freqs);
+        int longest = 0;
+        for (int length : lengths) {
+            longest = max(longest, length);
+        }
+        if (maxCodeLength > 0 && longest > maxCodeLength) {
+            lengths = PackageMerge.lengths(freqs, maxCodeLength);
+        }
+        return HuffmanCodeTable.canonical(lengths);
+    }
+
+    /**
+     * Scale frequencies down so that they add up to at most about 2^30, which
+     * the trees and the code builders can sum without overflowing. Small
+     * inputs keep their frequencies, and a character which occurs keeps a
+     * frequency of at least 1 so that it still gets a code.
+     * @param counts The frequencies, e.g. from calculateFrequencies().
+     * @return The scaled frequencies.
+     */
+    static int[] scaleFrequencies(long[] counts) {
+        long divisor = sizeFromFreqs(counts) / (1 << 30) + 1;
+        int[] freqs = new int[counts.length];
+        for (int c = 0; c < counts.length; ++c) {
+            if (counts[c] > 0) {
+                freqs[c] = (int)max(1, counts[c] / divisor);
+            }
         }
         return freqs;
     }
@@ -200,14 +374,26 @@ public class Huffman {
      * @param freqs The frequency table.
      * @return The sum of all frequencies.
      */
-    private static int sizeFromFreqs(int[] freqs) {
-        int size = 0;
+    private static long sizeFromFreqs(int[] freqs) {
+        long size = 0;
         for (int f : freqs) {
             size += f;
         }
         return size;
     }
 
+    /**
+     * Calculate the number of characters from the frequency table.
+     * @see #sizeFromFreqs(int[])
+     */
+    static long sizeFromFreqs(long[] freqs) {
+        long size = 0;
+        for (long f : freqs) {
+            size += f;
+        }
+        return size;
+    }
+
     /**
      * Compress a file into another file.
      * @param ins Input stream. Must be resettable.
@@ -215,25 +401,192 @@ public class Huffman {
      * @throws IOException 
      */
     public static void compressFile(InputStream ins, OutputStream outs) throws IOException {
+        compressFile(ins, outs, 0);
+    }
+
+    /**
+     * Compress a file into another file using length-limited codes.
+     * @param ins Input stream. Must be resettable.
+     * @param outs Output stream. Will contain a header.
+     * @param maxCodeLength The maximum code length, or 0 for no limit. Must be
+     *                      at least 8 if nonzero.
+     * @throws IOException 
+     */
+    public static void compressFile(InputStream ins, OutputStream outs, int maxCodeLength) throws IOException {
         if (!ins.markSupported()) {
             throw new IllegalArgumentException("input stream must support mark");
         }
         ins.mark(Integer.MAX_VALUE);
-        int[] freqs = calculateFrequencies(ins);
+        long[] freqs = calculateFrequencies(ins);
+        long size = sizeFromFreqs(freqs);
         ins.reset();
 
-        // the compressed data is written to compressedBytes through compressedBits
-        ByteArrayOutputStream compressedBytes = new ByteArrayOutputStream();
-        BitOutputStream compressedBits = new BitOutputStream(compressedBytes);
-        compress(ins, freqs, compressedBits);
-        compressedBits.flush();
+        HuffmanCodeTable table = canonicalCodes(scaleFrequencies(freqs), maxCodeLength);
 
+        // the header does not depend on the compressed data, so the data can
+        // be streamed right after it
         BitOutputStream bouts = new BitOutputStream(outs);
-        writeHeader(bouts, freqs);
-        bouts.write(compressedBytes.toByteArray());
+        writeHeader(bouts, size, table);
+        compress(ins, table, bouts);
         bouts.flush();
 
-        System.out.println("Compressed/original = " + 100 * (bouts.getBitCount() / 8.0) / sizeFromFreqs(freqs) + " %");
+        System.out.println("Compressed/original = " + 100 * (bouts.getBitCount() / 8.0) / size + " %");
+    }
+
+    /**
+     * Read as many bytes as possible into a buffer.
+     * @param ins The stream.
+     * @param buffer The buffer.
+     * @return The number of bytes read. Less than the buffer size only at the end of the stream.
+     * @throws IOException 
+     */
+    private static int readBlock(InputStream ins, byte[] buffer) throws IOException {
+        int size = 0;
+        while (size < buffer.length) {
+            int n = ins.read(buffer, size, buffer.length - size);
+            if (n == -1) {
+                break;
+            }
+            size += n;
+        }
+        return size;
+    }
+
+    /**
+     * Compress a file into another file in independent blocks. Each block has
+     * its own codes, so the codes adapt to changing statistics, and only one
+     * block is held in memory at a time. The input is read only once. The
+     * output consists of blockHeaderMagik followed by the blocks, each of
+     * which consists of:
+     *  - the size of the block as a 4-byte integer
+     *  - the code lengths
+     *  - the compressed data
+     * The last block has size zero and no code lengths.
+     * @param ins Input stream.
+     * @param outs Output stream. Will contain a header.
+     * @param blockSize The size of the blocks in bytes.
+     * @param maxCodeLength The maximum code length, or 0 for no limit.
+     * @throws IOException 
+     */
+    public static void compressBlocks(InputStream ins, OutputStream outs, int blockSize, int maxCodeLength) throws IOException {
+        compressBlocks(ins, outs, blockSize, maxCodeLength, false);
+    }
+
+    /**
+     * Compress a file into another file in independent blocks, optionally
+     * splitting the data of each block into interleaved streams.
+     *
+     * With interleaving, character i of a block is written to stream
+     * i mod interleavedStreams, and the compressed data of a block consists
+     * of the byte sizes of the streams as 4-byte integers followed by the
+     * streams themselves, starting at a byte boundary and each padded to
+     * full bytes. The decompressor can then
+     * decode the streams independently of each other, which lets the
+     * processor work on several codes at the same time. The output starts
+     * with interleavedHeaderMagik instead of blockHeaderMagik.
+     * @see #compressBlocks(InputStream, OutputStream, int, int)
+     * @param interleaved True to split the blocks into streams.
+     */
+    public static void compressBlocks(InputStream ins, OutputStream outs, int blockSize, int maxCodeLength, boolean interleaved) throws IOException {
+        BitOutputStream bouts = new BitOutputStream(outs);
+        bouts.writeBits(32, interleaved? interleavedHeaderMagik : blockHeaderMagik);
+        byte[] block = new byte[blockSize];
+        long inBytes = 0;
+        int size;
+        while ((size = readBlock(ins, block)) > 0) {
+            int[] freqs = Histogram.countParallel(block, 0, size);
+            HuffmanCodeTable table = canonicalCodes(freqs, maxCodeLength);
+            bouts.writeBits(32, size);
+            table.writeLengths(bouts);
+            if (interleaved) {
+                compressInterleaved(block, size, table, bouts);
+            } else {
+                long[] codes = table.codes;
+                int[] lengths = table.lengths;
+                for (int i = 0; i < size; ++i) {
+                    int b = block[i] & 0xff;
+                    bouts.writeBits(lengths[b], codes[b]);
+                }
+            }
+            inBytes += size;
+        }
+        bouts.writeBits(32, 0);
+        bouts.flush();
+
+        System.out.println("Compressed/original = " + 100 * (bouts.getBitCount() / 8.0) / inBytes + " %");
+    }
+
+    /**
+     * Compress one block into interleaved streams.
+     * @param block The data.
+     * @param size The size of the data.
+     * @param table The codes.
+     * @param outs The stream to write the stream sizes and the streams to.
+     * @throws IOException 
+     */
+    private static void compressInterleaved(byte[] block, int size, HuffmanCodeTable table, BitOutputStream outs) throws IOException {
+        ByteArrayOutputStream[] streamBytes = new ByteArrayOutputStream[interleavedStreams];
+        BitOutputStream[] streams = new BitOutputStream[interleavedStreams];
+        for (int s = 0; s < interleavedStreams; ++s) {
+            streamBytes[s] = new ByteArrayOutputStream(size / interleavedStreams + 16);
+            streams[s] = new BitOutputStream(streamBytes[s]);
+        }
+        long[] codes = table.codes;
+        int[] lengths = table.lengths;
+        for (int i = 0; i < size; ++i) {
+            int b = block[i] & 0xff;
+            streams[i % interleavedStreams].writeBits(lengths[b], codes[b]);
+        }
+        for (int s = 0; s < interleavedStreams; ++s) {
+            streams[s].flush();
+            outs.writeBits(32, streamBytes[s].size());
+        }
+        outs.padToByteBoundary();
+        for (int s = 0; s < interleavedStreams; ++s) {
+            outs.write(streamBytes[s].toByteArray());
+        }
+    }
+
+    /**
+     * Decompress one block written by compressInterleaved().
+     * @param ins The stream to read the stream sizes and the streams from.
+     * @param table The codes.
+     * @param block A buffer for the decompressed data. Must hold at least size bytes.
+     * @param size The size of the decompressed block.
+     * @throws IOException 
+     */
+    private static void decompressInterleaved(BitInputStream ins, HuffmanCodeTable table, byte[] block, int size) throws IOException {
+        BitInputStream[] streams = new BitInputStream[interleavedStreams];
+        int[] streamSizes = new int[interleavedStreams];
+        for (int s = 0; s < interleavedStreams; ++s) {
+            streamSizes[s] = ins.readBitsInt(32);
+        }
+        ins.skipToByteBoundary();
+        for (int s = 0; s < interleavedStreams; ++s) {
+            byte[] streamBytes = new byte[streamSizes[s]];
+            int read = 0;
+            while (read < streamSizes[s]) {
+                int n = ins.read(streamBytes, read, streamSizes[s] - read);
+                if (n == -1) {
+                    throw new IllegalArgumentException("Bad file.");
+                }
+                read += n;
+            }
+            streams[s] = new BitInputStream(new ByteArrayInputStream(streamBytes));
+        }
+
+        HuffmanDecodeTable decodeTable = new HuffmanDecodeTable(table);
+        BitInputStream s0 = streams[0], s1 = streams[1], s2 = streams[2], s3 = streams[3];
+        int i = 0;
+        for (; i + 4 <= size; i += 4) {
+            block[i] = (byte)decodeTable.decode(s0);
+            block[i + 1] = (byte)decodeTable.decode(s1);
+            block[i + 2] = (byte)decodeTable.decode(s2);
+            block[i + 3] = (byte)decodeTable.decode(s3);
+        }
+        for (; i < size; ++i) {
+            block[i] = (byte)decodeTable.decode(streams[i % interleavedStreams]);
+        }
     }
 
     /**
@@ -244,7 +597,33 @@ public class Huffman {
      */
     public static void decompressFile(InputStream ins, OutputStream outs) throws IOException {
         BitInputStream compressed = new BitInputStream(ins);
-        int freqs[] = readHeader(compressed);
-        decompress(compressed, freqs, outs);
+        int magik = (compressed.bitsRemaining(32) == 32)? compressed.readBitsInt(32) : 0;
+        if (magik == headerMagik) {
+            int[] freqs = readFrequencies(compressed);
+            decompress(compressed, freqs, buildTree(freqs, true), outs);
+        } else if (magik == canonicalHeaderMagik) {
+            long size = ((long)compressed.readBitsInt(32) << 32) | (compressed.readBitsInt(32) & 0xffffffffL);
+            HuffmanCodeTable table = HuffmanCodeTable.readCanonical(compressed, 256);
+            decompress(compressed, table, size, outs);
+        } else if (magik == blockHeaderMagik) {
+            int size;
+            while ((size = compressed.readBitsInt(32)) > 0) {
+                HuffmanCodeTable table = HuffmanCodeTable.readCanonical(compressed, 256);
+                decompress(compressed, table, size, outs);
+            }
+        } else if (magik == interleavedHeaderMagik) {
+            byte[] block = new byte[0];
+            int size;
+            while ((size = compressed.readBitsInt(32)) > 0) {
+                HuffmanCodeTable table = HuffmanCodeTable.readCanonical(compressed, 256);
+                if (block.length < size) {
+                    block = new byte[size];
+                }
+                decompressInterleaved(compressed, table, block, size);
+                outs.write(block, 0, size);
+            }
+        } else {
+            throw new IllegalArgumentException("Bad file.");
+        }
     }
 }
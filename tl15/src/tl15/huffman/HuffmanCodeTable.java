@@ -0,0 +1,166 @@
+package tl15.huffman;
+
+import java.io.IOException;
+import tl15.utils.BitInputStream;
+import tl15.utils.BitOutputStream;
+import static tl15.utils.Math.max;
+
+/**
+ * A table of Huffman codes indexed by character. The code of the character
+ * <code>c</code> is the last <code>lengths[c]</code> bits of
+ * <code>codes[c]</code>, the first bit of the code being the most significant
+ * one. Characters which do not occur in the tree have length zero.
+ *
+ * Since the frequencies are ints, a Huffman tree can never be deeper than
+ * about 45 levels (the frequencies would have to grow like the Fibonacci
+ * numbers), so a long is always enough to hold a code.
+ *
+ * A canonical code table is determined by the code lengths alone: the codes
+ * are assigned in order of increasing length, and characters with equal
+ * lengths get consecutive codes in the order of the characters. This way only
+ * the lengths need to be stored in a compressed file.
+ */
+public class HuffmanCodeTable {
+    public final long[] codes;
+    public final int[] lengths;
+
+    private HuffmanCodeTable(long[] codes, int[] lengths) {
+        this.codes = codes;
+        this.lengths = lengths;
+    }
+
+    /**
+     * Build the code table of a Huffman tree by walking once from each leaf
+     * to the root.
+     * @param tree The tree.
+     */
+    public HuffmanCodeTable(HuffmanTree tree) {
+        codes = new long[tree.leaves.length];
+        lengths = new int[tree.leaves.length];
+        for (int c = 0; c < tree.leaves.length; ++c) {
+            HuffmanTreeNode node = tree.leaves[c];
+            if (node == null) {
+                continue;
+            }
+            long code = 0;
+            int length = 0;
+            while (node.parent != null) {
+                if (node == node.parent.right) {
+                    code |= 1L << length;
+                }
+                ++length;
+                node = node.parent;
+            }
+            codes[c] = code;
+            lengths[c] = length;
+        }
+    }
+
+    /**
+     * Build the canonical code table with the given code lengths.
+     * @param lengths The code lengths. Characters with length zero get no code.
+     *                The lengths must satisfy the Kraft inequality.
+     * @return The code table.
+     */
+    public static HuffmanCodeTable canonical(int[] lengths) {
+        int maxLength = 0;
+        for (int length : lengths) {
+            maxLength = max(maxLength, length);
+        }
+        int[] lengthCounts = new int[maxLength + 1];
+        for (int length : lengths) {
+            ++lengthCounts[length];
+        }
+        lengthCounts[0] = 0;
+
+        // the first code of each length
+        long[] nextCode = new long[maxLength + 1];
+        long code = 0;
+        for (int length = 1; length <= maxLength; ++length) {
+            code = (code + lengthCounts[length - 1]) << 1;
+            nextCode[length] = code;
+        }
+
+        long[] codes = new long[lengths.length];
+        for (int c = 0; c < lengths.length; ++c) {
+            if (lengths[c] > 0) {
+                codes[c] = nextCode[lengths[c]]++;
+            }
+        }
+        return new HuffmanCodeTable(codes, lengths.clone());
+    }
+
+    /**
+     * Get the number of bits needed to express x.
+     */
+    private static int bitsNeeded(int x) {
+        return 32 - Integer.numberOfLeadingZeros(x);
+    }
+
+    /**
+     * Write the code lengths to a stream. The format is:
+     *  - 6 bits 'n' telling how many bits each length takes
+     *  - for each character its code length in 'n' bits; a zero length is
+     *    followed by the number of further characters with zero length
+     *    (plus one) in Elias gamma code
+     * This way the long runs of unused characters take only a few bits.
+     * @param outs The stream.
+     * @throws IOException 
+     * @see #readCanonical(BitInputStream, int)
+     */
+    public void writeLengths(BitOutputStream outs) throws IOException {
+        int maxLength = 0;
+        for (int length : lengths) {
+            maxLength = max(maxLength, length);
+        }
+        int lengthBits = bitsNeeded(maxLength);
+        outs.writeBits(6, lengthBits);
+        int c = 0;
+        while (c < lengths.length) {
+            outs.writeBits(lengthBits, lengths[c]);
+            if (lengths[c] != 0) {
+                ++c;
+                continue;
+            }
+            int run = 1;
+            while (c + run < lengths.length && lengths[c + run] == 0) {
+                ++run;
+            }
+            int gammaBits = bitsNeeded(run);
+            outs.writeBits(gammaBits - 1, 0);
+            outs.writeBits(gammaBits, run);
+            c += run;
+        }
+    }
+
+    /**
+     * Read code lengths from a stream and build the canonical code table.
+     * @param ins The stream.
+     * @param alphabetSize The number of characters.
+     * @return The code table.
+     * @throws IOException 
+     * @see #writeLengths(BitOutputStream)
+     */
+    public static HuffmanCodeTable readCanonical(BitInputStream ins, int alphabetSize) throws IOException {
+        int[] lengths = new int[alphabetSize];
+        int lengthBits = ins.readBitsInt(6);
+        int c = 0;
+        while (c < alphabetSize) {
+            lengths[c] = ins.readBitsInt(lengthBits);
+            if (lengths[c] != 0) {
+                ++c;
+                continue;
+            }
+            int gammaBits = 1;
+            while (ins.readBitsInt(1) == 0) {
+                ++gammaBits;
+            }
+            int run = (1 << (gammaBits - 1)) | ins.readBitsInt(gammaBits - 1);
+            if (c + run > alphabetSize) {
+                throw new IllegalArgumentException("Bad code lengths.");
+            }
+            c += run;
+        }
+        return canonical(lengths);
+    }
+}
@@ -0,0 +1,222 @@
+package tl15.huffman;
+
+import java.io.IOException;
+import java.util.Arrays;
+import tl15.utils.BitInputStream;
+import static tl15.utils.Math.max;
+import static tl15.utils.Math.min;
+
+/**
+ * A lookup table for decoding Huffman codes several bits at a time.
+ *
+ * The root table is indexed by the next rootBits bits of the input. An entry
+ * either tells the character and the length of its code (if the code is at
+ * most rootBits long), or points to a second-level table indexed by the bits
+ * following the first rootBits bits. Second-level tables can in turn point to
+ * further tables, so codes of any length can be decoded.
+ *
+ * The entries are packed into ints:
+ *  - a non-negative entry is a character: <code>(character &lt;&lt; 8) | length</code>,
+ *    where length is the number of bits used from this table level, so the
+ *    alphabet can have up to 2^23 characters
+ *  - a negative entry is a link: <code>~((offset &lt;&lt; 5) | bits)</code>,
+ *    where offset is the index of the next table in <code>table</code> and
+ *    bits is its index width
+ */
+public class HuffmanDecodeTable {
+    /** The maximum index width of the root table. */
+    private static final int maxRootBits = 10;
+
+    /** The maximum index width of the other tables. */
+    private static final int maxSubBits = 6;
+
+    private final int rootBits;
+    private int[] table = new int[16];
+    private int size = 0;
+
+    /** For tables built from several code tables, the root table of each. */
+    private final int[] rootOffsets;
+    private final int[] rootBitsOf;
+
+    /**
+     * Build the decoding table for a set of codes.
+     * @param codes The codes. At least one character must have a nonzero code length.
+     */
+    public HuffmanDecodeTable(HuffmanCodeTable codes) {
+        this(new HuffmanCodeTable[]{codes});
+    }
+
+    /**
+     * Build the decoding tables for several sets of codes into one flat
+     * array. The codes of set i are decoded by decode(ins, i).
+     * @param codes The sets of codes.
+     * @see #decode(BitInputStream, int)
+     */
+    public HuffmanDecodeTable(HuffmanCodeTable[] codes) {
+        rootOffsets = new int[codes.length];
+        rootBitsOf = new int[codes.length];
+        for (int t = 0; t < codes.length; ++t) {
+            buildRoot(codes[t], t);
+        }
+        // the first root table is at offset 0
+        rootBits = rootBitsOf[0];
+    }
+
+    /**
+     * Build the root table (and its subtables) for a set of codes.
+     * @param codes The codes.
+     * @param index The index of the set of codes.
+     */
+    private void buildRoot(HuffmanCodeTable codes, int index) {
+        int maxLength = 0;
+        int count = 0;
+        for (int length : codes.lengths) {
+            if (length > 0) {
+                maxLength = max(maxLength, length);
+                ++count;
+            }
+        }
+        int[] chars = new int[count];
+        count = 0;
+        for (int c = 0; c < codes.lengths.length; ++c) {
+            if (codes.lengths[c] > 0) {
+                chars[count++] = c;
+            }
+        }
+        rootBitsOf[index] = min(maxLength, maxRootBits);
+        rootOffsets[index] = build(codes, chars, 0, count, 0, rootBitsOf[index]);
+    }
+
+    /**
+     * Get the last n bits of a long.
+     */
+    private static long lastBits(long x, int n) {
+        return (n == 64)? x : x & ((1L << n) - 1);
+    }
+
+    /**
+     * Build a table (and its subtables) and append it to <code>table</code>.
+     * @param codes The codes.
+     * @param chars The characters that belong to this table are
+     *              <code>chars[from..from+count-1]</code>.
+     * @param from The index of the first character in <code>chars</code>.
+     * @param count The number of characters.
+     * @param consumed The number of bits consumed before this table, i.e. the
+     *                 length of the common prefix of the codes of the characters.
+     * @param bits The index width of the table.
+     * @return The offset of the new table.
+     */
+    private int build(HuffmanCodeTable codes, int[] chars, int from, int count, int consumed, int bits) {
+        int offset = allocate(1 << bits);
+
+        // The characters whose codes do not fit into this table, grouped by
+        // the index they have in this table.
+        int[] groupSizes = new int[1 << bits];
+        int[] groupMaxLengths = new int[1 << bits];
+        int grouped = 0;
+        for (int i = from; i < from + count; ++i) {
+            int c = chars[i];
+            int remaining = codes.lengths[c] - consumed;
+            long code = lastBits(codes.codes[c], remaining);
+            if (remaining <= bits) {
+                int first = (int)code << (bits - remaining);
+                int entry = (c << 8) | remaining;
+                for (int j = 0; j < (1 << (bits - remaining)); ++j) {
+                    table[offset + first + j] = entry;
+                }
+            } else {
+                int index = (int)(code >>> (remaining - bits));
+                ++groupSizes[index];
+                groupMaxLengths[index] = max(groupMaxLengths[index], remaining - bits);
+                ++grouped;
+            }
+        }
+        if (grouped == 0) {
+            return offset;
+        }
+
+        // Sort the grouped characters by their index in one pass, so that
+        // building the tables takes linear time even for big alphabets.
+        int[] groupStarts = new int[(1 << bits) + 1];
+        for (int index = 0; index < (1 << bits); ++index) {
+            groupStarts[index + 1] = groupStarts[index] + groupSizes[index];
+        }
+        int[] groups = new int[grouped];
+        int[] groupEnds = Arrays.copyOf(groupStarts, 1 << bits);
+        for (int i = from; i < from + count; ++i) {
+            int c = chars[i];
+            int remaining = codes.lengths[c] - consumed;
+            if (remaining > bits) {
+                groups[groupEnds[(int)(lastBits(codes.codes[c], remaining) >>> (remaining - bits))]++] = c;
+            }
+        }
+
+        for (int index = 0; index < (1 << bits); ++index) {
+            if (groupSizes[index] == 0) {
+                continue;
+            }
+            int subBits = min(groupMaxLengths[index], maxSubBits);
+            int subOffset = build(codes, groups, groupStarts[index], groupSizes[index], consumed + bits, subBits);
+            table[offset + index] = ~((subOffset << 5) | subBits);
+        }
+        return offset;
+    }
+
+    /**
+     * Reserve space for a new table.
+     * @param n The number of entries.
+     * @return The offset of the reserved space.
+     */
+    private int allocate(int n) {
+        while (size + n > table.length) {
+            int[] newTable = new int[table.length * 2];
+            System.arraycopy(table, 0, newTable, 0, size);
+            table = newTable;
+        }
+        int offset = size;
+        size += n;
+        return offset;
+    }
+
+    /**
+     * Decode one character.
+     * @param ins The stream to read the code from. Exactly the bits of the
+     *            code are consumed.
+     * @return The character.
+     * @throws IOException
+     */
+    public int decode(BitInputStream ins) throws IOException {
+        int bits = rootBits;
+        int entry = table[ins.peekBits(bits)];
+        while (entry < 0) {
+            ins.consumeBits(bits);
+            int link = ~entry;
+            bits = link & 31;
+            entry = table[(link >>> 5) + ins.peekBits(bits)];
+        }
+        ins.consumeBits(entry & 0xff);
+        return entry >>> 8;
+    }
+
+    /**
+     * Decode one character using one of several sets of codes.
+     * @param ins The stream to read the code from. Exactly the bits of the
+     *            code are consumed.
+     * @param codes The index of the set of codes.
+     * @return The character.
+     * @throws IOException
+     * @see #HuffmanDecodeTable(HuffmanCodeTable[])
+     */
+    public int decode(BitInputStream ins, int codes) throws IOException {
+        int bits = rootBitsOf[codes];
+        int entry = table[rootOffsets[codes] + ins.peekBits(bits)];
+        while (entry < 0) {
+            ins.consumeBits(bits);
+            int link = ~entry;
+            bits = link & 31;
+            entry = table[(link >>> 5) + ins.peekBits(bits)];
+        }
+        ins.consumeBits(entry & 0xff);
+        return entry >>> 8;
+    }
+}
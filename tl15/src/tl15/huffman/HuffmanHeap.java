@@ -11,13 +11,31 @@ public class HuffmanHeap {
     /** Current size of the heap. */
     private int size;
 
+    /**
+     * True if heapify() sifts an element all the way down like the first
+     * version did. That is not a valid heap order, but the trees of files
+     * with a frequency header were built with it.
+     */
+    private final boolean legacyOrder;
+
     /**
      * @param limit The size limit of the heap. Adding more than limit nodes
      *              will cause an explosion.
      */
     public HuffmanHeap(int limit) {
+        this(limit, false);
+    }
+
+    /**
+     * @param limit The size limit of the heap.
+     * @param legacyOrder True to pop the nodes in the order of the first
+     *                    version, which is needed to rebuild its trees.
+     * @see #HuffmanHeap(int)
+     */
+    HuffmanHeap(int limit, boolean legacyOrder) {
         heap = new HuffmanTreeNode[limit];
         this.size = 0;
+        this.legacyOrder = legacyOrder;
     }
 
     /**
@@ -79,6 +97,9 @@ public class HuffmanHeap {
                 } else {
                     smallest = right;
                 }
+                if (!legacyOrder && heap[node].sum <= heap[smallest].sum) {
+                    break;
+                }
                 swap(node, smallest);
                 node = smallest;
             } else {
@@ -0,0 +1,96 @@
+package tl15.huffman;
+
+/**
+ * Calculates optimal length-limited prefix code lengths with the
+ * package-merge algorithm of Larmore and Hirschberg.
+ *
+ * The idea is to think of each character as a coin of width 2^-l for every
+ * l = 1..maxLength, with the frequency of the character as its value. Coins
+ * of the same width are paired ("packaged") into coins of twice the width,
+ * starting from the narrowest ones, and the 2n-2 cheapest items of width 1/2
+ * are chosen. The code length of a character is then the number of its coins
+ * included in the chosen items.
+ */
+public class PackageMerge {
+    /**
+     * Calculate code lengths for the given frequencies so that no length
+     * exceeds maxLength and the total length of the encoded data is minimal.
+     * @param freqs The frequencies. Characters with frequency 0 get length 0.
+     * @param maxLength The maximum code length. Must be such that all the
+     *                  characters fit, i.e. 2^maxLength &gt;= (number of characters
+     *                  with a nonzero frequency).
+     * @return The code lengths. A lone character gets length 1.
+     */
+    public static int[] lengths(int[] freqs, int maxLength) {
+        // sort the characters by frequency using the heap
+        HuffmanHeap q = new HuffmanHeap(freqs.length);
+        for (int c = 0; c < freqs.length; ++c) {
+            if (freqs[c] > 0) {
+                q.push(new HuffmanTreeNode(freqs[c], null, null, c));
+            }
+        }
+        int n = q.size();
+        int[] chars = new int[n];
+        long[] weights = new long[n];
+        for (int i = 0; i < n; ++i) {
+            HuffmanTreeNode t = q.pop();
+            chars[i] = t.data;
+            weights[i] = t.sum;
+        }
+
+        int[] lengths = new int[freqs.length];
+        if (n <= 1) {
+            if (n == 1) {
+                lengths[chars[0]] = 1;
+            }
+            return lengths;
+        }
+        if (maxLength < 31 && (1 << maxLength) < n) {
+            throw new IllegalArgumentException("maximum code length " + maxLength + " is too small for " + n + " characters");
+        }
+
+        // items[l] lists the items of width 2^-(l+1) in increasing order of
+        // value; an element is the index of a character in chars, or -1 for
+        // a package made of two items of the list items[l+1]
+        int[][] items = new int[maxLength][];
+        long[] itemWeights = weights;
+        items[maxLength - 1] = new int[n];
+        for (int i = 0; i < n; ++i) {
+            items[maxLength - 1][i] = i;
+        }
+        for (int l = maxLength - 2; l >= 0; --l) {
+            int packages = items[l + 1].length / 2;
+            int[] merged = new int[n + packages];
+            long[] mergedWeights = new long[n + packages];
+            int i = 0, p = 0;
+            for (int k = 0; k < merged.length; ++k) {
+                long packageWeight = (p < packages)? itemWeights[2 * p] + itemWeights[2 * p + 1] : Long.MAX_VALUE;
+                if (i < n && weights[i] <= packageWeight) {
+                    merged[k] = i;
+                    mergedWeights[k] = weights[i++];
+                } else {
+                    merged[k] = -1;
+                    mergedWeights[k] = packageWeight;
+                    ++p;
+                }
+            }
+            items[l] = merged;
+            itemWeights = mergedWeights;
+        }
+
+        // take the 2n-2 cheapest items of width 1/2 and expand the packages
+        int selected = 2 * n - 2;
+        for (int l = 0; l < maxLength && selected > 0; ++l) {
+            int packages = 0;
+            for (int k = 0; k < selected; ++k) {
+                if (items[l][k] >= 0) {
+                    ++lengths[chars[items[l][k]]];
+                } else {
+                    ++packages;
+                }
+            }
+            selected = 2 * packages;
+        }
+        return lengths;
+    }
+}
@@ -0,0 +1,161 @@
+package tl15.huffman;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import tl15.utils.BitInputStream;
+import tl15.utils.BitOutputStream;
+
+/**
+ * A Huffman code trained in advance from a sample corpus. Compressing with a
+ * pretrained table needs neither a frequency pass nor a code table in the
+ * output, which pays off for small messages with similar statistics.
+ *
+ * Every byte has a code, even if it did not occur in the corpus, and the end
+ * of a message is marked with a special character, so a compressed message
+ * consists of the codes only. A table is identified by an ID calculated
+ * from its code lengths.
+ *
+ * A table never changes after construction, so it can be shared between
+ * threads freely.
+ */
+public class StaticHuffmanTable {
+    /** The character marking the end of a message. */
+    private static final int endOfData = 256;
+
+    /** The length limit of the codes, keeping the decoding table small. */
+    private static final int maxCodeLength = 15;
+
+    private static final int tableMagik = ('T' << 24) | ('L' << 16) | (5 << 8) | 5;
+    private static final int headerMagik = ('T' << 24) | ('L' << 16) | (6 << 8) | 5;
+
+    private final int id;
+    private final long[] codes;
+    private final int[] lengths;
+    private final HuffmanDecodeTable decodeTable;
+
+    private StaticHuffmanTable(HuffmanCodeTable table) {
+        codes = table.codes;
+        lengths = table.lengths;
+        decodeTable = new HuffmanDecodeTable(table);
+        CRC32 crc = new CRC32();
+        for (int length : lengths) {
+            crc.update(length);
+        }
+        id = (int)crc.getValue();
+    }
+
+    /**
+     * Train a table from a sample corpus.
+     * @param corpus The corpus. All remaining data is consumed.
+     * @return The table.
+     * @throws IOException
+     */
+    public static StaticHuffmanTable train(InputStream corpus) throws IOException {
+        int[] byteFreqs = Huffman.scaleFrequencies(Huffman.calculateFrequencies(corpus));
+        int[] freqs = new int[endOfData + 1];
+        for (int b = 0; b < 256; ++b) {
+            // bytes missing from the corpus still need a code
+            freqs[b] = byteFreqs[b] + 1;
+        }
+        freqs[endOfData] = 1;
+        return new StaticHuffmanTable(Huffman.canonicalCodes(freqs, maxCodeLength));
+    }
+
+    /**
+     * @return The ID of the table.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Write the table to a stream.
+     * @param outs The stream. It is flushed.
+     * @throws IOException
+     */
+    public void save(OutputStream outs) throws IOException {
+        BitOutputStream bouts = new BitOutputStream(outs);
+        bouts.writeBits(32, tableMagik);
+        HuffmanCodeTable.canonical(lengths).writeLengths(bouts);
+        bouts.flush();
+    }
+
+    /**
+     * Read a table written by save().
+     * @param ins The stream.
+     * @return The table.
+     * @throws IOException
+     */
+    public static StaticHuffmanTable load(InputStream ins) throws IOException {
+        BitInputStream bins = new BitInputStream(ins);
+        int magik = (bins.bitsRemaining(32) == 32)? bins.readBitsInt(32) : 0;
+        if (magik != tableMagik) {
+            throw new IllegalArgumentException("Bad table file.");
+        }
+        return new StaticHuffmanTable(HuffmanCodeTable.readCanonical(bins, endOfData + 1));
+    }
+
+    /**
+     * Compress a message. Nothing but the codes is written.
+     * @param ins The message. All remaining data is consumed.
+     * @param outs The bit stream to write the codes to. It is not flushed.
+     * @throws IOException
+     */
+    public void compress(InputStream ins, BitOutputStream outs) throws IOException {
+        int b;
+        while ((b = ins.read()) != -1) {
+            outs.writeBits(lengths[b], codes[b]);
+        }
+        outs.writeBits(lengths[endOfData], codes[endOfData]);
+    }
+
+    /**
+     * Decompress a message written by compress().
+     * @param ins The codes. Nothing after the end of the message is consumed
+     *            from the bit stream.
+     * @param outs The stream to append the message to.
+     * @throws IOException
+     */
+    public void decompress(BitInputStream ins, OutputStream outs) throws IOException {
+        int c;
+        while ((c = decodeTable.decode(ins)) != endOfData) {
+            outs.write(c);
+        }
+    }
+
+    /**
+     * Compress a file into another file. The output starts with a header
+     * telling the ID of the table, so that decompressFile() can check that it
+     * was given the same table.
+     * @param ins Input stream.
+     * @param outs Output stream.
+     * @throws IOException
+     */
+    public void compressFile(InputStream ins, OutputStream outs) throws IOException {
+        BitOutputStream bouts = new BitOutputStream(outs);
+        bouts.writeBits(32, headerMagik);
+        bouts.writeBits(32, id);
+        compress(ins, bouts);
+        bouts.flush();
+    }
+
+    /**
+     * Decompress a file written by compressFile().
+     * @param ins Input stream. Must contain a header.
+     * @param outs Output stream.
+     * @throws IOException
+     */
+    public void decompressFile(InputStream ins, OutputStream outs) throws IOException {
+        BitInputStream bins = new BitInputStream(ins);
+        int magik = (bins.bitsRemaining(32) == 32)? bins.readBitsInt(32) : 0;
+        if (magik != headerMagik) {
+            throw new IllegalArgumentException("Bad file.");
+        }
+        if (bins.bitsRemaining(32) < 32 || bins.readBitsInt(32) != id) {
+            throw new IllegalArgumentException("The file was compressed with a different table.");
+        }
+        decompress(bins, outs);
+    }
+}
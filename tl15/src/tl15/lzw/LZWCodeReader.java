@@ -0,0 +1,16 @@
+package tl15.lzw;
+
+import java.io.IOException;
+
+/**
+ * Reads the codes written by an LZWCodeWriter.
+ */
+interface LZWCodeReader {
+    /**
+     * Read a code.
+     * @param codeSize The current code size.
+     * @return The code, or -1 at the end of the codes.
+     * @throws IOException
+     */
+    int read(int codeSize) throws IOException;
+}
@@ -0,0 +1,31 @@
+package tl15.lzw;
+
+import java.io.IOException;
+
+/**
+ * Writes LZW codes in some other way than as plain bits of the current code
+ * size. A writer which writes all codes with the same size can ignore the
+ * current code size.
+ */
+interface LZWCodeWriter {
+    /**
+     * Write a code.
+     * @param codeSize The current code size.
+     * @param code The code.
+     * @throws IOException
+     */
+    void write(int codeSize, int code) throws IOException;
+
+    /**
+     * Write everything that is buffered to the stream. The stream is not
+     * flushed.
+     * @throws IOException
+     */
+    void finish() throws IOException;
+
+    /**
+     * @return The number of bits of the codes written so far. It may be an
+     *         estimate for codes which are still buffered.
+     */
+    long getBitCount();
+}
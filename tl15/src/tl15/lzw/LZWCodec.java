@@ -0,0 +1,959 @@
+package tl15.lzw;
+
+import tl15.utils.BitInputStream;
+import tl15.utils.BitOutputStream;
+import tl15.utils.LargeArray;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import tl15.utils.List;
+import static tl15.utils.Math.max;
+import static tl15.utils.Math.min;
+import static tl15.utils.Math.twoTo;
+
+/**
+ * An implementation of LZW-(de)compression.
+ *
+ * A codec owns its configuration, given as an LZWConfig, and the
+ * dictionaries it reuses from one call to the next. The dictionaries make a
+ * codec unsafe to use from two threads at once, but codecs share no state
+ * with each other, so any number of threads can work in parallel with a
+ * codec each.
+ *
+ * When the dictionary becomes full, it is either reset right away or, like in
+ * Unix compress, kept as it is for as long as it compresses well: the ratio
+ * of output bits to input bytes since the last reset is checked at regular
+ * intervals, and the dictionary is reset when the ratio becomes a given
+ * percentage worse than the best seen since the dictionary became full.
+ * Either way the compressed data tells the decompressor where to reset, so
+ * the policy does not change the file format.
+ *
+ * In the LRU mode the dictionary is never reset. Instead, once it is full,
+ * each new string takes the code of the least recently used string. A string
+ * counts as used when it or a longer string starting with it is output, so a
+ * string is never used less recently than its prefixes and the least recently
+ * used string is never the prefix of another one. The string just output is
+ * about to become one, though, so if it is the least recently used one, e.g.
+ * when the whole dictionary is one chain of prefixes, no string is added
+ * that time. The decompressor sees the same codes in the same order and
+ * evicts exactly the same strings.
+ *
+ * A codec may have a preset dictionary, whose strings are in the dictionary
+ * from the start and are never reset or evicted. Its ID is stored in the
+ * compressed data, and only a codec with the same preset dictionary can
+ * decompress it.
+ *
+ * In the fixed-width mode the codes are always of the maximum code size,
+ * 12 or 16 bits, and written in whole bytes by LZWFixedWidthWriter. The
+ * output is bigger, but decompressing it needs no bit operations.
+ *
+ * In the Huffman mode the codes are written by LZWHuffmanWriter with Huffman
+ * codes built for blocks of codes, which makes the output smaller when some
+ * codes are used much more often than others.
+ */
+public class LZWCodec {
+    private static final int headerMagik = ('T' << 24) | ('L' << 16) | (1 << 8) | 6;
+    private static final int lruHeaderMagik = ('T' << 24) | ('L' << 16) | (2 << 8) | 6;
+    private static final int chunkedHeaderMagik = ('T' << 24) | ('L' << 16) | (3 << 8) | 6;
+    private static final int presetHeaderMagik = ('T' << 24) | ('L' << 16) | (4 << 8) | 6;
+    private static final int presetChunkedHeaderMagik = ('T' << 24) | ('L' << 16) | (5 << 8) | 6;
+    private static final int fixedWidthHeaderMagik = ('T' << 24) | ('L' << 16) | (7 << 8) | 6;
+    private static final int huffmanHeaderMagik = ('T' << 24) | ('L' << 16) | (8 << 8) | 6;
+
+    /** How many bytes compress() reads from its input at a time. */
+    private static final int inputBlockSize = 1 << 16;
+
+    /**
+     * The initial capacity of the dictionary of decompress(). It is doubled
+     * when needed, up to the last code.
+     */
+    private static final int initialDecodeCapacity = 1 << 12;
+
+    /** The code sizes tried by chooseMaxCodeSize(). */
+    private static final int[] candidateCodeSizes = {9, 10, 11, 12, 13, 14, 16, 18, 20};
+
+    /** The size of the sample chooseMaxCodeSize() compresses. */
+    private static final int sampleSize = 1 << 20;
+
+    /**
+     * The size of the part of the sample chooseMaxCodeSize() compresses
+     * first to get the compressor compiled by the JIT, so that the CPU times
+     * of the candidates are comparable.
+     */
+    private static final int warmUpSize = 1 << 18;
+
+    /**
+     * chooseMaxCodeSize() prefers a faster code size when its output is at
+     * most this many percent bigger than the smallest one.
+     */
+    private static final double choiceTolerance = 1;
+
+    /** How many input bytes there are between two checks of the compression ratio. */
+    private static final int ratioCheckInterval = 2000;
+
+    private final int maxCodeSize;
+    private final int resetThreshold;
+    private final boolean lru;
+
+    /** The preset dictionary, or null. */
+    private final LZWPresetDictionary preset;
+
+    /** Whether the codes are written with a fixed width. */
+    private final boolean fixedWidth;
+
+    /** Whether the codes are written with Huffman codes. */
+    private final boolean huffman;
+
+    /** The first code after the single characters and the preset strings. */
+    private final int firstCode;
+
+    /** The code size at the start and after each reset. */
+    private final int initialCodeSize;
+
+    /** The number of times compress() reset the dictionary in the last call. */
+    private int resetCount = 0;
+
+    /** The number of strings compress() evicted in the LRU mode in the last call. */
+    private long evictionCount = 0;
+
+    /** The dictionary of compress(). */
+    private final LZWDictionary dict = new LZWDictionary();
+
+    /** The dictionary and the output buffer of decompress(). */
+    private LargeArray prefix = null;   // of int, allocated on first use
+    private boolean presetDecoded = false;   // whether prefix etc. contain the preset strings
+    private LargeArray suffix = null;   // of byte
+    private LargeArray length = null;   // of int
+    private byte[] buffer = new byte[256];
+
+    /** The recency order of the codes in the LRU mode. */
+    private final LZWRecencyList recency = new LZWRecencyList();
+
+    /**
+     * @param config The configuration. It is copied, so later changes to it
+     *               do not affect the codec.
+     */
+    public LZWCodec(LZWConfig config) {
+        if (config.getCodeFormat() == null) {
+            throw new IllegalArgumentException("No code format");
+        }
+        maxCodeSize = config.getMaxCodeSize();
+        resetThreshold = config.getResetThreshold();
+        lru = config.isLru();
+        preset = config.getPreset();
+        fixedWidth = (config.getCodeFormat() == LZWConfig.CodeFormat.FIXED_WIDTH);
+        huffman = (config.getCodeFormat() == LZWConfig.CodeFormat.HUFFMAN);
+        if (maxCodeSize < 9 || maxCodeSize > 31 || (fixedWidth && !LZWFixedWidthWriter.isValidCodeSize(maxCodeSize))
+                || (huffman && !LZWHuffmanWriter.isValidCodeSize(maxCodeSize))) {
+            throw new IllegalArgumentException("Bad maximum code size: " + maxCodeSize);
+        }
+        if (resetThreshold < 0) {
+            throw new IllegalArgumentException("Bad reset threshold: " + resetThreshold);
+        }
+        firstCode = 256 + ((preset != null)? preset.size() : 0);
+        if (firstCode > lastCode(maxCodeSize)) {
+            throw new IllegalArgumentException("The preset dictionary does not fit in " + maxCodeSize + "-bit codes");
+        }
+        initialCodeSize = fixedWidth? maxCodeSize : initialCodeSize(firstCode);
+        if (preset != null) {
+            dict.preset(preset.getPrefixes(), preset.getCharacters());
+        }
+    }
+
+    /**
+     * @return A new configuration like the one this codec was created with.
+     */
+    private LZWConfig getConfig() {
+        return new LZWConfig().maxCodeSize(maxCodeSize).resetThreshold(resetThreshold).lru(lru).preset(preset)
+                .codeFormat(fixedWidth? LZWConfig.CodeFormat.FIXED_WIDTH
+                            : huffman? LZWConfig.CodeFormat.HUFFMAN : LZWConfig.CodeFormat.VARIABLE_WIDTH);
+    }
+
+    /**
+     * @return The maximum code size in bits.
+     */
+    public int getMaxCodeSize() {
+        return maxCodeSize;
+    }
+
+    /**
+     * @return The number of times the dictionary was reset in the last call
+     *         of compress().
+     */
+    public int getResetCount() {
+        return resetCount;
+    }
+
+    /**
+     * @return The dictionary of compress(), for checking it in tests.
+     */
+    LZWDictionary getDictionary() {
+        return dict;
+    }
+
+    private static int lastCode(int maxCodeSize) {
+        return twoTo(maxCodeSize) - 3;
+    }
+
+    /**
+     * @param firstCode The first code after the single characters and the
+     *                  preset strings.
+     * @return The smallest code size which fits all the codes below firstCode.
+     */
+    private static int initialCodeSize(int firstCode) {
+        int codeSize = 9;
+        while (growCode(codeSize) < firstCode) {
+            ++codeSize;
+        }
+        return codeSize;
+    }
+
+    private static int growCode(int codeSize) {
+        return twoTo(codeSize) - 2;
+    }
+
+    private static int resetCode(int codeSize) {
+        return twoTo(codeSize) - 1;
+    }
+    
+    /**
+     * Read bytes until a buffer is full or the stream ends.
+     * @param ins The stream.
+     * @param buffer The buffer.
+     * @return The number of bytes read; less than the size of the buffer only
+     *         at the end of the stream.
+     * @throws IOException
+     */
+    private static int readBlock(InputStream ins, byte[] buffer) throws IOException {
+        int size = 0;
+        while (size < buffer.length) {
+            int n = ins.read(buffer, size, buffer.length - size);
+            if (n == -1) {
+                break;
+            }
+            size += n;
+        }
+        return size;
+    }
+
+    /**
+     * Compress ins stream into outs. The output stream is not flushed.
+     * @param ins
+     * @param outs
+     * @throws IOException
+     */
+    public void compress(InputStream ins, BitOutputStream outs) throws IOException {
+        long inputSize = encode(ins, outs);
+
+        System.out.println("Compressed/original (no headers): " + (100.0 * outs.getBitCount() / (8 * inputSize)) + " %");
+        if (lru) {
+            System.out.println(evictionCount + " strings were evicted from the dictionary");
+        } else {
+            System.out.println("Dictionary was reset " + resetCount + " times");
+        }
+    }
+
+    /**
+     * Write a code.
+     * @param outs The stream.
+     * @param writer The writer of the codes in the fixed-width and Huffman
+     *               modes, or null.
+     * @param codeSize The current code size.
+     * @param code The code.
+     * @throws IOException
+     */
+    private static void writeCode(BitOutputStream outs, LZWCodeWriter writer, int codeSize, int code) throws IOException {
+        if (writer != null) {
+            writer.write(codeSize, code);
+        } else {
+            outs.writeBits(codeSize, code);
+        }
+    }
+
+    /**
+     * Compress ins stream into outs without printing anything.
+     * @param ins
+     * @param outs
+     * @return The number of bytes read from ins.
+     * @throws IOException
+     */
+    private long encode(InputStream ins, BitOutputStream outs) throws IOException {
+        int lastCode = lastCode(maxCodeSize);
+        dict.reset();
+        recency.clear();
+        resetCount = 0;
+        evictionCount = 0;
+        long inputSize = 0;
+        int currentCodeSize = initialCodeSize;
+        int growCode = growCode(currentCodeSize);
+        LZWCodeWriter writer = null;
+        if (fixedWidth) {
+            writer = new LZWFixedWidthWriter(outs, maxCodeSize);
+        } else if (huffman) {
+            writer = new LZWHuffmanWriter(outs, maxCodeSize);
+        }
+
+        // the compression ratio since the last reset, in output bits per
+        // input byte
+        long resetBytes = 0;
+        long resetStartBits = 0;
+        int untilCheck = ratioCheckInterval;
+        double bestRatio = Double.MAX_VALUE;
+
+        byte[] block = new byte[inputBlockSize];
+        int blockSize;
+        while ((blockSize = readBlock(ins, block)) > 0) {
+            for (int i = 0; i < blockSize; ++i) {
+                int b = block[i] & 0xff;
+                ++inputSize;
+                ++resetBytes;
+                --untilCheck;
+                if (!dict.hasNextChar(b)) {
+                    int code = dict.getCurrentCode();
+                    // never in the fixed-width mode
+                    while (code >= growCode) {
+                        writeCode(outs, writer, currentCodeSize, growCode);
+                        ++currentCodeSize;
+                        growCode = growCode(currentCodeSize);
+                    }
+                    writeCode(outs, writer, currentCodeSize, code);
+                    if (lru) {
+                        for (int c = code; c >= firstCode; c = dict.getPrefix(c)) {
+                            recency.moveToNewest(c);
+                        }
+                        int added = dict.getNextCode();
+                        if (added <= lastCode) {
+                            dict.add(b);
+                        } else {
+                            // the string just output is the prefix of the
+                            // new one, so it cannot be evicted
+                            added = recency.getOldest();
+                            if (added == code) {
+                                added = -1;
+                            }
+                            if (added != -1) {
+                                recency.remove(added);
+                                dict.remove(added);
+                                dict.add(b, added);
+                                ++evictionCount;
+                            }
+                        }
+                        if (added != -1 && code >= firstCode) {
+                            recency.addAfter(added, code);
+                        } else if (added != -1) {
+                            recency.addNewest(added);
+                        }
+                    } else if (dict.getNextCode() <= lastCode) {
+                        dict.add(b);
+                    }
+                    dict.restartTraverse();
+                    dict.advance(b);
+                    boolean reset = false;
+                    if (!lru && dict.getNextCode() > lastCode) {
+                        if (resetThreshold == 0) {
+                            reset = true;
+                        } else if (untilCheck <= 0) {
+                            long bits = (writer != null)? writer.getBitCount() : outs.getBitCount();
+                            double ratio = (double)(bits - resetStartBits) / resetBytes;
+                            reset = ratio > bestRatio * (100 + resetThreshold) / 100;
+                            if (ratio < bestRatio) {
+                                bestRatio = ratio;
+                            }
+                            untilCheck = ratioCheckInterval;
+                        }
+                    }
+                    if (reset) {
+                        writeCode(outs, writer, currentCodeSize, resetCode(currentCodeSize));
+                        dict.reset();
+                        currentCodeSize = initialCodeSize;
+                        growCode = growCode(currentCodeSize);
+                        dict.advance(b);
+                        bestRatio = Double.MAX_VALUE;
+                        resetBytes = 1;
+                        resetStartBits = (writer != null)? writer.getBitCount() : outs.getBitCount();
+                        ++resetCount;
+                    }
+                } else {
+                    dict.advance(b);
+                }
+            }
+        }
+        if (dict.isTraversing()) {
+            int code = dict.getCurrentCode();
+            while (code >= growCode) {
+                writeCode(outs, writer, currentCodeSize, growCode);
+                ++currentCodeSize;
+                growCode = growCode(currentCodeSize);
+            }
+            writeCode(outs, writer, currentCodeSize, code);
+        }
+        if (writer != null) {
+            writer.finish();
+        }
+        return inputSize;
+    }
+
+    /**
+     * Decompress ins into outs. The output stream is not flushed.
+     *
+     * The dictionary is kept in flat arrays: the string with code c is the
+     * string with code <code>prefix[c]</code> followed by the character
+     * <code>suffix[c]</code>, and its length is <code>length[c]</code>. A code
+     * is decoded by following the prefixes backwards into a buffer which is
+     * reused for every code, so nothing is allocated per code. The arrays
+     * move off the heap when they grow large, like the dictionary of
+     * compress().
+     *
+     * @param ins
+     * @param outs
+     * @throws IOException
+     */
+    public void decompress(BitInputStream ins, OutputStream outs) throws IOException {
+        decompress(ins, outs, maxCodeSize, lru, preset != null, fixedWidth, huffman);
+    }
+
+    /**
+     * Decompress ins into outs. The output stream is not flushed.
+     * @param ins
+     * @param outs
+     * @param maxCodeSize The maximum code size used in compressing.
+     * @param lru Whether the data was compressed in the LRU mode.
+     * @param usePreset Whether the data was compressed with the preset
+     *                  dictionary of this codec.
+     * @param fixedWidth Whether the data was compressed in the fixed-width
+     *                   mode.
+     * @param huffman Whether the data was compressed in the Huffman mode.
+     * @throws IOException
+     */
+    private void decompress(BitInputStream ins, OutputStream outs, int maxCodeSize, boolean lru, boolean usePreset,
+            boolean fixedWidth, boolean huffman) throws IOException {
+        int lastCode = lastCode(maxCodeSize);
+        int firstCode = usePreset? this.firstCode : 256;
+        int initialCodeSize = fixedWidth? maxCodeSize : initialCodeSize(firstCode);
+        LZWCodeReader reader = null;
+        if (fixedWidth) {
+            reader = new LZWFixedWidthReader(ins, maxCodeSize);
+        } else if (huffman) {
+            reader = new LZWHuffmanReader(ins, maxCodeSize);
+        }
+        if (firstCode > lastCode) {
+            throw new IllegalArgumentException("The preset dictionary does not fit in " + maxCodeSize + "-bit codes");
+        }
+        if (prefix == null) {
+            prefix = new LargeArray(initialDecodeCapacity, 4);
+            suffix = new LargeArray(initialDecodeCapacity, 1);
+            length = new LargeArray(initialDecodeCapacity, 4);
+            for (int c = 0; c < 256; ++c) {
+                suffix.putByte(c, (byte)c);
+                length.putInt(c, 1);
+            }
+        }
+        if (usePreset && !presetDecoded) {
+            if (prefix.length() < firstCode) {
+                prefix = prefix.copyOf(firstCode);
+                suffix = suffix.copyOf(firstCode);
+                length = length.copyOf(firstCode);
+            }
+            int[] presetPrefixes = preset.getPrefixes();
+            byte[] presetCharacters = preset.getCharacters();
+            for (int c = 256; c < firstCode; ++c) {
+                prefix.putInt(c, presetPrefixes[c - 256]);
+                suffix.putByte(c, presetCharacters[c - 256]);
+                length.putInt(c, length.getInt(presetPrefixes[c - 256]) + 1);
+            }
+        }
+        // the preset strings are overwritten unless they are in use
+        presetDecoded = usePreset;
+        recency.clear();
+        int nextCode = firstCode;
+        int curCodeSize = initialCodeSize;
+        int growCode = growCode(curCodeSize);
+        int resetCode = resetCode(curCodeSize);
+
+        // the previous code, or -1 if there is none since the last reset
+        int previous = -1;
+        while (true) {
+            int code;
+            if (reader != null) {
+                code = reader.read(curCodeSize);
+            } else {
+                code = (ins.bitsRemaining(curCodeSize) == curCodeSize)? ins.readBitsInt(curCodeSize) : -1;
+            }
+            if (code == -1) {
+                break;
+            }
+            // the fixed-width reader never returns the grow code
+            if (code == growCode) {
+                ++curCodeSize;
+                growCode = growCode(curCodeSize);
+                resetCode = resetCode(curCodeSize);
+                continue;
+            }
+            if (code == resetCode) {
+                recency.clear();
+                nextCode = firstCode;
+                curCodeSize = initialCodeSize;
+                growCode = growCode(curCodeSize);
+                resetCode = resetCode(curCodeSize);
+                previous = -1;
+                continue;
+            }
+
+            // the code which the previous string followed by the first
+            // character of this one gets, or -1 if it is not added; in the
+            // LRU mode the compressor chose the code before outputting this
+            // one, so it may be the code of this one as well
+            int added = -1;
+            if (previous != -1) {
+                if (nextCode <= lastCode) {
+                    added = nextCode;
+                } else if (lru) {
+                    added = recency.getOldest();
+                    if (added == previous) {
+                        added = -1;
+                    }
+                }
+            }
+            if (code >= nextCode && code != added) {
+                throw new IllegalArgumentException("Bad file.");
+            }
+
+            // code == added is the exception case in the LZW decompression
+            // algorithm: the string is the previous one followed by its own
+            // first character
+            int decoded = (code != added)? code : previous;
+            int decodedLength = length.getInt(decoded);
+            int outputLength = (code != added)? decodedLength : decodedLength + 1;
+            if (buffer.length < outputLength) {
+                buffer = Arrays.copyOf(buffer, max(2 * buffer.length, outputLength));
+            }
+            for (int i = decodedLength - 1, c = decoded; i >= 0; --i) {
+                buffer[i] = suffix.getByte(c);
+                c = prefix.getInt(c);
+            }
+            if (code == added) {
+                buffer[decodedLength] = buffer[0];
+            }
+
+            if (added != -1) {
+                if (added == nextCode) {
+                    if (nextCode == prefix.length()) {
+                        long capacity = min(2 * prefix.length(), lastCode + 1L);
+                        prefix = prefix.copyOf(capacity);
+                        suffix = suffix.copyOf(capacity);
+                        length = length.copyOf(capacity);
+                    }
+                    ++nextCode;
+                } else {
+                    recency.remove(added);
+                }
+                prefix.putInt(added, previous);
+                suffix.putByte(added, buffer[0]);
+                length.putInt(added, length.getInt(previous) + 1);
+                if (lru && previous >= firstCode) {
+                    recency.addAfter(added, previous);
+                } else if (lru) {
+                    recency.addNewest(added);
+                }
+            }
+            if (lru) {
+                for (int c = code; c >= firstCode; c = prefix.getInt(c)) {
+                    recency.moveToNewest(c);
+                }
+            }
+            outs.write(buffer, 0, outputLength);
+            previous = code;
+        }
+    }
+
+    /**
+     * Compress ins into outs using the maximum code size of this codec. A header is written to
+     * the output stream. With a preset dictionary the header is
+     * presetHeaderMagik, the maximum code size in 5 bits, a bit telling
+     * whether the LRU mode is used and the ID of the dictionary in 32 bits.
+     * In the fixed-width mode the header is fixedWidthHeaderMagik, the code
+     * size in 5 bits, a bit telling whether the LRU mode is used, a bit
+     * telling whether a preset dictionary is used, followed by its ID if
+     * it is, and padding to a byte boundary. In the Huffman mode the header
+     * is the same with huffmanHeaderMagik and without the padding.
+     *
+     * @param ins
+     * @param outs
+     * @throws IOException
+     */
+    public void compressFile(InputStream ins, OutputStream outs) throws IOException {
+        BitOutputStream bouts = new BitOutputStream(outs);
+
+        // the header
+        if (fixedWidth || huffman) {
+            bouts.writeBits(32, fixedWidth? fixedWidthHeaderMagik : huffmanHeaderMagik);
+            bouts.writeBits(5, maxCodeSize);
+            bouts.writeBits(1, lru? 1 : 0);
+            bouts.writeBits(1, (preset != null)? 1 : 0);
+            if (preset != null) {
+                bouts.writeBits(32, preset.getId());
+            }
+            if (fixedWidth) {
+                bouts.padToByteBoundary();
+            }
+        } else if (preset != null) {
+            bouts.writeBits(32, presetHeaderMagik);
+            bouts.writeBits(5, maxCodeSize);
+            bouts.writeBits(1, lru? 1 : 0);
+            bouts.writeBits(32, preset.getId());
+        } else {
+            bouts.writeBits(32, lru? lruHeaderMagik : headerMagik);
+            bouts.writeBits(5, maxCodeSize);
+        }
+
+        compress(ins, bouts);
+        bouts.flush();
+    }
+
+    /**
+     * Decompress ins into outs. The input stream must contain a header. The
+     * maximum code size is read from the header, so it need not be the one
+     * of this codec. If the data was compressed with a preset dictionary,
+     * this codec must have the same one.
+     *
+     * @param ins
+     * @param outs
+     * @throws IOException
+     */
+    public void decompressFile(InputStream ins, OutputStream outs) throws IOException {
+        BitInputStream bins = new BitInputStream(ins);
+        int magik = (bins.bitsRemaining(32) == 32)? bins.readBitsInt(32) : 0;
+        if (magik != headerMagik && magik != lruHeaderMagik && magik != chunkedHeaderMagik
+                && magik != presetHeaderMagik && magik != presetChunkedHeaderMagik && magik != fixedWidthHeaderMagik
+                && magik != huffmanHeaderMagik) {
+            throw new IllegalArgumentException("Bad file.");
+        }
+        boolean fileFixedWidth = (magik == fixedWidthHeaderMagik);
+        boolean fileHuffman = (magik == huffmanHeaderMagik);
+        int fileCodeSize = (bins.bitsRemaining(5) == 5)? bins.readBitsInt(5) : 0;
+        if (fileCodeSize < 9 || (fileFixedWidth && !LZWFixedWidthWriter.isValidCodeSize(fileCodeSize))
+                || (fileHuffman && !LZWHuffmanWriter.isValidCodeSize(fileCodeSize))) {
+            throw new IllegalArgumentException("Bad file.");
+        }
+        System.out.println("Using max code size " + fileCodeSize);
+        boolean fileLru = (magik == lruHeaderMagik);
+        if (magik != headerMagik && magik != lruHeaderMagik) {
+            fileLru = (bins.readBitsInt(1) == 1);
+        }
+        boolean usePreset = (magik == presetHeaderMagik || magik == presetChunkedHeaderMagik);
+        if (fileFixedWidth || fileHuffman) {
+            usePreset = (bins.readBitsInt(1) == 1);
+        }
+        if (usePreset) {
+            if (bins.bitsRemaining(32) < 32) {
+                throw new IllegalArgumentException("Bad file.");
+            }
+            int id = bins.readBitsInt(32);
+            if (preset == null || id != preset.getId()) {
+                throw new IllegalArgumentException("The file was compressed with a different dictionary.");
+            }
+        }
+        if (magik == chunkedHeaderMagik || magik == presetChunkedHeaderMagik) {
+            bins.skipToByteBoundary();
+            decompressChunks(bins, outs, fileCodeSize, fileLru, usePreset? preset : null, Runtime.getRuntime().availableProcessors());
+        } else if (fileFixedWidth) {
+            bins.skipToByteBoundary();
+            decompress(bins, outs, fileCodeSize, fileLru, usePreset, true, false);
+        } else {
+            decompress(bins, outs, fileCodeSize, fileLru, usePreset, false, fileHuffman);
+        }
+    }
+
+    /**
+     * Compress ins into outs in independent chunks, using several threads.
+     * Each thread has a codec of its own configured like this one, and each
+     * chunk starts from an empty dictionary, so the chunks can be
+     * decompressed in parallel as well. The output consists of
+     * chunkedHeaderMagik, the maximum code size in 5 bits, a bit telling
+     * whether the LRU mode is used, padding to a byte boundary, and batches
+     * of chunks, each of which consists of:
+     *  - the number of chunks in the batch as a 4-byte integer
+     *  - the compressed size of each chunk in bytes as 4-byte integers
+     *  - the compressed chunks, each padded to full bytes
+     * The last batch has no chunks. A batch has two chunks per thread, and
+     * the next batch is read and submitted before a batch is written, so the
+     * threads have work while it is being written.
+     * With a preset dictionary presetChunkedHeaderMagik is used instead, and
+     * the ID of the dictionary follows the LRU bit. Not available in the
+     * fixed-width and Huffman modes.
+     *
+     * @param ins Input stream.
+     * @param outs Output stream. Will contain a header.
+     * @param chunkSize The size of the chunks in bytes.
+     * @param threads The number of threads to use.
+     * @throws IOException
+     */
+    public void compressFileParallel(InputStream ins, OutputStream outs, int chunkSize, int threads) throws IOException {
+        if (fixedWidth) {
+            throw new IllegalArgumentException("Fixed-width codes cannot be compressed in chunks");
+        }
+        if (huffman) {
+            throw new IllegalArgumentException("Huffman-coded codes cannot be compressed in chunks");
+        }
+        BitOutputStream bouts = new BitOutputStream(outs);
+        bouts.writeBits(32, (preset != null)? presetChunkedHeaderMagik : chunkedHeaderMagik);
+        bouts.writeBits(5, maxCodeSize);
+        bouts.writeBits(1, lru? 1 : 0);
+        if (preset != null) {
+            bouts.writeBits(32, preset.getId());
+        }
+        bouts.padToByteBoundary();
+
+        // a codec per thread, which reuses its dictionary for every chunk
+        final LZWConfig config = getConfig();
+        final ThreadLocal<LZWCodec> codecs = new ThreadLocal<LZWCodec>() {
+            @Override
+            protected LZWCodec initialValue() {
+                return new LZWCodec(config);
+            }
+        };
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            // the batch to be written next, or null before the first one
+            List<Future<byte[]>> batch = null;
+            long inputSize = 0;
+            int chunkCount = 0;
+            while (true) {
+                List<Future<byte[]>> next = new List<>();
+                while (next.size() < 2 * threads) {
+                    final byte[] chunk = new byte[chunkSize];
+                    final int size = readBlock(ins, chunk);
+                    if (size == 0) {
+                        break;
+                    }
+                    inputSize += size;
+                    next.add(pool.submit(new Callable<byte[]>() {
+                        @Override
+                        public byte[] call() throws IOException {
+                            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                            BitOutputStream chunkOuts = new BitOutputStream(compressed);
+                            codecs.get().encode(new ByteArrayInputStream(chunk, 0, size), chunkOuts);
+                            chunkOuts.flush();
+                            return compressed.toByteArray();
+                        }
+                    }));
+                }
+                if (batch != null) {
+                    byte[][] compressed = new byte[batch.size()][];
+                    for (int i = 0; i < compressed.length; ++i) {
+                        compressed[i] = result(batch.get(i));
+                    }
+                    bouts.writeBits(32, compressed.length);
+                    for (byte[] c : compressed) {
+                        bouts.writeBits(32, c.length);
+                    }
+                    for (byte[] c : compressed) {
+                        bouts.write(c, 0, c.length);
+                    }
+                    chunkCount += compressed.length;
+                    if (compressed.length == 0) {
+                        break;
+                    }
+                }
+                batch = next;
+            }
+            bouts.flush();
+            System.out.println("Compressed " + chunkCount + " chunks on " + threads + " threads");
+            System.out.println("Compressed/original = " + (100.0 * bouts.getBitCount() / (8 * inputSize)) + " %");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Decompress the chunks written by compressFileParallel() in parallel.
+     * Each thread has a codec of its own, so the dictionaries are allocated
+     * and the preset strings are decoded once per thread, not per chunk.
+     * @param ins Input stream, positioned after the header.
+     * @param outs Output stream.
+     * @param maxCodeSize The maximum code size used in compressing.
+     * @param lru Whether the data was compressed in the LRU mode.
+     * @param preset The preset dictionary used in compressing, or null.
+     * @param threads The number of threads to use.
+     * @throws IOException
+     */
+    private static void decompressChunks(BitInputStream ins, OutputStream outs, final int maxCodeSize, final boolean lru,
+            final LZWPresetDictionary preset, int threads) throws IOException {
+        // a codec per thread, which reuses its dictionary for every chunk
+        final ThreadLocal<LZWCodec> codecs = new ThreadLocal<LZWCodec>() {
+            @Override
+            protected LZWCodec initialValue() {
+                return new LZWCodec(new LZWConfig().maxCodeSize(maxCodeSize).lru(lru).preset(preset));
+            }
+        };
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<byte[]>> batch = new List<>();
+            while (true) {
+                int count = (ins.bitsRemaining(32) == 32)? ins.readBitsInt(32) : -1;
+                if (count < 0) {
+                    throw new IllegalArgumentException("Bad file.");
+                }
+                if (count == 0) {
+                    break;
+                }
+                int[] sizes = new int[count];
+                for (int i = 0; i < count; ++i) {
+                    int size = (ins.bitsRemaining(32) == 32)? ins.readBitsInt(32) : -1;
+                    if (size < 0) {
+                        throw new IllegalArgumentException("Bad file.");
+                    }
+                    sizes[i] = size;
+                }
+                batch.clear();
+                for (int i = 0; i < count; ++i) {
+                    final byte[] chunk = new byte[sizes[i]];
+                    if (readBlock(ins, chunk) != chunk.length) {
+                        throw new IllegalArgumentException("Bad file.");
+                    }
+                    batch.add(pool.submit(new Callable<byte[]>() {
+                        @Override
+                        public byte[] call() throws IOException {
+                            ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+                            codecs.get().decompress(new BitInputStream(new ByteArrayInputStream(chunk)), decompressed);
+                            return decompressed.toByteArray();
+                        }
+                    }));
+                }
+                for (int i = 0; i < count; ++i) {
+                    byte[] decompressed = result(batch.get(i));
+                    outs.write(decompressed, 0, decompressed.length);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Choose the maximum code size for compressing a stream. The beginning
+     * of the stream is compressed with several code sizes concurrently, and
+     * the one giving the smallest output wins, unless another one is almost
+     * as small (by choiceTolerance) and takes less CPU time. A code size
+     * giving exactly the same output as a smaller one never filled its
+     * dictionary and gains nothing, so it is not considered. The stream is
+     * reset to where it was, so it can then be compressed.
+     * @param ins The stream. Must support mark.
+     * @param config The configuration to compress with. Its reset threshold,
+     *               LRU mode and preset dictionary are used, and the code
+     *               sizes the preset dictionary does not fit in are not
+     *               tried. The samples are compressed with variable-width
+     *               codes, whatever the code format is.
+     * @param threads The number of threads to use.
+     * @return The chosen maximum code size.
+     * @throws IOException
+     */
+    public static int chooseMaxCodeSize(InputStream ins, LZWConfig config, int threads) throws IOException {
+        LZWPresetDictionary preset = config.getPreset();
+        if (!ins.markSupported()) {
+            throw new IllegalArgumentException("input stream must support mark");
+        }
+        ins.mark(sampleSize);
+        final byte[] sample = new byte[sampleSize];
+        final int size = readBlock(ins, sample);
+        ins.reset();
+        new LZWCodec(new LZWConfig()).encode(new ByteArrayInputStream(sample, 0, min(size, warmUpSize)),
+                                          new BitOutputStream(new ByteArrayOutputStream()));
+
+        final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Integer> codeSizes = new List<>();
+            List<Future<long[]>> races = new List<>();
+            for (int codeSize : candidateCodeSizes) {
+                if (preset != null && 256 + preset.size() > lastCode(codeSize)) {
+                    continue;
+                }
+                codeSizes.add(codeSize);
+                final LZWCodec candidate = new LZWCodec(new LZWConfig().maxCodeSize(codeSize)
+                        .resetThreshold(config.getResetThreshold()).lru(config.isLru()).preset(preset));
+                races.add(pool.submit(new Callable<long[]>() {
+                    @Override
+                    public long[] call() throws IOException {
+                        long start = cpuTime(threadBean);
+                        BitOutputStream outs = new BitOutputStream(new ByteArrayOutputStream());
+                        candidate.encode(new ByteArrayInputStream(sample, 0, size), outs);
+                        return new long[]{outs.getBitCount(), cpuTime(threadBean) - start};
+                    }
+                }));
+            }
+            if (codeSizes.size() == 0) {
+                throw new IllegalArgumentException("The preset dictionary does not fit in any code size tried");
+            }
+
+            long[][] scores = new long[codeSizes.size()][];
+            int smallest = 0;
+            for (int i = 0; i < scores.length; ++i) {
+                scores[i] = result(races.get(i));
+                System.out.println("Code size " + codeSizes.get(i) + ": " + (scores[i][0] + 7) / 8 + " bytes, "
+                                   + scores[i][1] / 1000000 + "ms of CPU time on a " + size + "-byte sample");
+                if (scores[i][0] < scores[smallest][0]) {
+                    smallest = i;
+                }
+            }
+            int chosen = smallest;
+            for (int i = 0; i < scores.length; ++i) {
+                boolean redundant = (i > 0 && scores[i][0] == scores[i - 1][0]);
+                if (!redundant && scores[i][0] <= scores[smallest][0] * (100 + choiceTolerance) / 100
+                        && scores[i][1] < scores[chosen][1]) {
+                    chosen = i;
+                }
+            }
+            System.out.println("Chose max code size " + codeSizes.get(chosen));
+            return codeSizes.get(chosen);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * @param threadBean The thread management bean.
+     * @return The CPU time of the current thread in nanoseconds, or the wall
+     *         clock time if the JVM cannot measure CPU time.
+     */
+    private static long cpuTime(ThreadMXBean threadBean) {
+        if (threadBean.isCurrentThreadCpuTimeSupported()) {
+            return threadBean.getCurrentThreadCpuTime();
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Wait for the result of a task.
+     * @param future The task.
+     * @return The result.
+     * @throws IOException If the task threw one, or the wait was interrupted.
+     */
+    private static <T> T result(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package tl15.lzw;
+
+/**
+ * The configuration of an LZWCodec. The setters return the configuration
+ * itself, so a configuration can be written in one expression, e.g.
+ * <code>new LZWConfig().maxCodeSize(16).lru(true)</code>. A codec copies the
+ * configuration when it is created, so changing it afterwards does not
+ * affect the codec. The values are checked by the codec.
+ */
+public class LZWConfig {
+    /** How the codes are written. */
+    public enum CodeFormat {
+        /** Each code with the current code size, growing as the dictionary grows. */
+        VARIABLE_WIDTH,
+        /** Each code with the maximum code size in whole bytes. */
+        FIXED_WIDTH,
+        /** Huffman codes built for blocks of codes. */
+        HUFFMAN
+    }
+
+    private int maxCodeSize = 12;
+    private int resetThreshold = 0;
+    private boolean lru = false;
+    private LZWPresetDictionary preset = null;
+    private CodeFormat codeFormat = CodeFormat.VARIABLE_WIDTH;
+
+    /**
+     * @param maxCodeSize The maximum code size in bits. Must be between 9..31,
+     *                    12 or 16 in the fixed-width format and at most 16 in
+     *                    the Huffman format. 12 by default.
+     * @return This configuration.
+     */
+    public LZWConfig maxCodeSize(int maxCodeSize) {
+        this.maxCodeSize = maxCodeSize;
+        return this;
+    }
+
+    /**
+     * @param resetThreshold How many percent the compression ratio may get
+     *                       worse before a full dictionary is reset, or 0 to
+     *                       reset as soon as the dictionary is full. Not used
+     *                       in the LRU mode. 0 by default.
+     * @return This configuration.
+     */
+    public LZWConfig resetThreshold(int resetThreshold) {
+        this.resetThreshold = resetThreshold;
+        return this;
+    }
+
+    /**
+     * @param lru Evict the least recently used strings instead of resetting
+     *            the dictionary. False by default.
+     * @return This configuration.
+     */
+    public LZWConfig lru(boolean lru) {
+        this.lru = lru;
+        return this;
+    }
+
+    /**
+     * @param preset The preset dictionary, or null for none. Its strings must
+     *               leave room for at least one more code. None by default.
+     * @return This configuration.
+     */
+    public LZWConfig preset(LZWPresetDictionary preset) {
+        this.preset = preset;
+        return this;
+    }
+
+    /**
+     * @param codeFormat How the codes are written. Variable width by default.
+     * @return This configuration.
+     */
+    public LZWConfig codeFormat(CodeFormat codeFormat) {
+        this.codeFormat = codeFormat;
+        return this;
+    }
+
+    public int getMaxCodeSize() {
+        return maxCodeSize;
+    }
+
+    public int getResetThreshold() {
+        return resetThreshold;
+    }
+
+    public boolean isLru() {
+        return lru;
+    }
+
+    public LZWPresetDictionary getPreset() {
+        return preset;
+    }
+
+    public CodeFormat getCodeFormat() {
+        return codeFormat;
+    }
+}
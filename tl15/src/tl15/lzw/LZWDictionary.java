@@ -1,24 +1,202 @@
 package tl15.lzw;
 
-import tl15.utils.List;
-
+import tl15.utils.LargeArray;
+import static tl15.utils.Math.max;
 
 /**
  * Implements an LZW dictionary (prefix tree).
+ *
+ * A string in the dictionary is a shorter string (its prefix, identified by
+ * its code) followed by one character. Every string except the single
+ * characters is stored in an open addressing hash table as the key
+ * <code>(prefix code, character)</code> mapping to the code of the string.
+ * The single characters are not stored; the code of character c is c.
+ *
+ * The table uses linear probing and doubles its size when it becomes half
+ * full, so it only takes memory in proportion to the strings added.
+ *
+ * Every slot is stamped with the generation of the dictionary it was written
+ * in, in the high bits of the key, and only the slots of the current
+ * generation count as used. Resetting the dictionary just starts a new
+ * generation, so it takes constant time however big the table is, and the
+ * table is reused as it is. The strings of a preset dictionary get a stamp
+ * newer than any generation, so they survive the resets.
+ *
+ * The prefix and the last character of each string are also kept in arrays
+ * indexed by code, so that a string can be removed by its code and its code
+ * reused for another string.
+ *
+ * The tables are large arrays, which move off the Java heap when they grow
+ * large, so that the dictionaries of large code sizes, which take hundreds of
+ * megabytes, do not need a huge heap.
  */
 public class LZWDictionary {
-    private final LZWDictionaryEntry root = new LZWDictionaryEntry(null, -1);
+    /** The number of low bits of a slot holding the key; the rest hold the generation. */
+    private static final int keyBits = 31 + 8;
+    private static final long keyMask = (1L << keyBits) - 1;
+
+    /**
+     * Generations wrap around to 1 here; generation 0 marks unused slots.
+     * The generation right after the last one is for the preset strings.
+     */
+    private static final int generationLimit = (1 << (64 - keyBits - 1)) - 1;
+    private static final long presetStamp = (long)generationLimit << keyBits;
+
+    /** The initial size of the hash table. Must be a power of two. */
+    private static final int initialCapacity = 1 << 12;
+
+    private LargeArray keys;   // of long
+    private LargeArray codes;  // of int
+    private long mask;
+
+    /** The prefix code and the last character of each string by code. */
+    private LargeArray prefixes = new LargeArray(initialCapacity, 4);
+    private LargeArray characters = new LargeArray(initialCapacity, 1);
+
+    /** The number of bits in an index of the hash table. */
+    private int indexBits;
+
+    /** The current generation and the stamp of its slots. */
+    private int generation = 1;
+    private long stamp = (long)generation << keyBits;
+
+    /** The number of strings in the hash table. */
+    private int size = 0;
+
+    /** The number of preset strings, which have the codes right after 255. */
+    private int presetSize = 0;
+
     private int nextCode = 256;
-    private LZWDictionaryEntry currentEntry = root;
+
+    /** The code of the current string, or -1 if it is empty. */
+    private int currentCode = -1;
+
+    /**
+     * The result of the last lookup by hasNextChar(), so that advance() need
+     * not look up the same string again.
+     */
+    private int lookedUpChar = -1;
+    private int lookedUpCode = -1;
 
     public LZWDictionary() {
-        for (int i = 0; i < 256; ++i) {
-            root.children[i] = new LZWDictionaryEntry(root, i);
+        allocate(initialCapacity);
+    }
+
+    /**
+     * Allocate an empty hash table.
+     * @param capacity The number of slots. Must be a power of two.
+     */
+    private void allocate(long capacity) {
+        keys = new LargeArray(capacity, 8);
+        codes = new LargeArray(capacity, 4);
+        mask = capacity - 1;
+        indexBits = Long.numberOfTrailingZeros(capacity);
+        size = 0;
+    }
+
+    /**
+     * @param prefix The code of the prefix.
+     * @param character The last character.
+     * @return The key of the string.
+     */
+    private static long key(int prefix, int character) {
+        return ((long)prefix << 8) | character;
+    }
+
+    /**
+     * @param entry A key, possibly stamped.
+     * @return The slot where the search for the key starts.
+     */
+    private long slot(long entry) {
+        return ((entry & keyMask) * 0x9e3779b97f4a7c15L) >>> (64 - indexBits);
+    }
+
+    /**
+     * @param entry The contents of a slot.
+     * @return True if the slot is used in the current generation. Since the
+     *         generations only grow until the table is cleared, the stamps
+     *         of the older ones are smaller.
+     */
+    private boolean isUsed(long entry) {
+        return entry >= stamp;
+    }
+
+    /**
+     * Find the code of a string.
+     * @param prefix The code of the prefix.
+     * @param character The last character.
+     * @return The code of the string, or -1 if it is not in the dictionary.
+     */
+    private int find(int prefix, int character) {
+        long key = key(prefix, character);
+        for (long i = slot(key); ; i = (i + 1) & mask) {
+            long entry = keys.getLong(i);
+            if (!isUsed(entry)) {
+                return -1;
+            }
+            if ((entry & keyMask) == key) {
+                return codes.getInt(i);
+            }
+        }
+    }
+
+    /**
+     * Put a string into the hash table. The string must not be there already.
+     * @param entry The stamped key of the string.
+     * @param code The code of the string.
+     */
+    private void insert(long entry, int code) {
+        long i = slot(entry);
+        while (isUsed(keys.getLong(i))) {
+            i = (i + 1) & mask;
+        }
+        keys.putLong(i, entry);
+        codes.putInt(i, code);
+        ++size;
+    }
+
+    /**
+     * Remove a string from the hash table. Linear probing does not allow just
+     * emptying its slot, so the strings after it in the same run are moved
+     * back to fill the hole where needed.
+     * @param key The key of the string. The string must be in the table.
+     */
+    private void delete(long key) {
+        long entry = stamp | key;
+        long hole = slot(entry);
+        while (keys.getLong(hole) != entry) {
+            hole = (hole + 1) & mask;
+        }
+        for (long i = (hole + 1) & mask; isUsed(keys.getLong(i)); i = (i + 1) & mask) {
+            // the string in slot i may move to the hole if the hole is
+            // between its starting slot and i
+            if (((i - slot(keys.getLong(i))) & mask) >= ((i - hole) & mask)) {
+                keys.putLong(hole, keys.getLong(i));
+                codes.putInt(hole, codes.getInt(i));
+                hole = i;
+            }
         }
+        keys.putLong(hole, 0);
+        --size;
     }
 
     /**
-     * 
+     * Double the size of the hash table.
+     */
+    private void grow() {
+        LargeArray oldKeys = keys;
+        LargeArray oldCodes = codes;
+        allocate(2 * oldKeys.length());
+        for (long i = 0; i < oldKeys.length(); ++i) {
+            long entry = oldKeys.getLong(i);
+            if (isUsed(entry)) {
+                insert(entry, oldCodes.getInt(i));
+            }
+        }
+    }
+
+    /**
+     *
      * @return The code the next string added will get.
      */
     public int getNextCode() {
@@ -29,12 +207,20 @@ public class LZWDictionary {
      * Reset the dictionary to its initial state.
      */
     public void reset() {
-        for (int i = 0; i < 256; ++i) {
-//            root.children[i].invalidate();        // for some reason this is much slower than creating a new object
-            root.children[i] = new LZWDictionaryEntry(root, i);
+        if (++generation == generationLimit) {
+            // the stamps of old generations would come back into use
+            for (long i = 0; i < keys.length(); ++i) {
+                if (keys.getLong(i) < presetStamp) {
+                    keys.putLong(i, 0);
+                }
+            }
+            generation = 1;
         }
-        nextCode = 256;
-        currentEntry = root;
+        stamp = (long)generation << keyBits;
+        size = presetSize;
+        nextCode = 256 + presetSize;
+        currentCode = -1;
+        lookedUpChar = -1;
     }
 
     /**
@@ -42,59 +228,139 @@ public class LZWDictionary {
      * @param character Character we want to advance to.
      * @return Yes or no.
      */
-    public boolean hasNextChar(Integer character) {
-        return currentEntry.children[character] != null && currentEntry.children[character].getCode() >= 0;
+    public boolean hasNextChar(int character) {
+        if (currentCode == -1) {
+            return true;
+        }
+        lookedUpChar = character;
+        lookedUpCode = find(currentCode, character);
+        return lookedUpCode != -1;
     }
 
     /**
      * Get the code for the current string.
-     * @return 
+     * @return The code, or -1 if the current string is empty.
      */
-    public Integer getCurrentCode() {
-        return currentEntry.getCode();
+    public int getCurrentCode() {
+        return currentCode;
     }
 
     /**
      * Add the current string + given character to the dictionary and add a code for it.
-     * @param character 
+     * The current string must not be empty.
+     * @param character
      */
-    public void add(Integer character) {
-        currentEntry.children[character] = new LZWDictionaryEntry(currentEntry, nextCode++);
+    public void add(int character) {
+        add(character, nextCode++);
     }
 
     /**
-     * Restart traversing from root.
+     * Add the current string + given character to the dictionary with a code
+     * freed by remove(). The current string must not be empty.
+     * @param character
+     * @param code The code of the new string. It must not be in use.
      */
-    public void restartTraverse() {
-        currentEntry = root;
+    public void add(int character, int code) {
+        put(currentCode, character, code, stamp);
+        lookedUpChar = -1;
     }
 
     /**
-     * Advance to a child node.
-     * @param character 
+     * Put a string into the dictionary.
+     * @param prefix The code of the prefix.
+     * @param character The last character.
+     * @param code The code of the string.
+     * @param stamp The stamp of the slot.
      */
-    public void advance(Integer character) {
-        currentEntry = currentEntry.children[character];
+    private void put(int prefix, int character, int code, long stamp) {
+        if (2 * (size + 1L) > keys.length()) {
+            grow();
+        }
+        if (code >= prefixes.length()) {
+            long capacity = max(2 * prefixes.length(), code + 1L);
+            prefixes = prefixes.copyOf(capacity);
+            characters = characters.copyOf(capacity);
+        }
+        insert(stamp | key(prefix, character), code);
+        prefixes.putInt(code, prefix);
+        characters.putByte(code, (byte)character);
     }
 
     /**
-     * @return True if the current string is not empty.
+     * Empty the dictionary and fill it with preset strings, which then stay
+     * in the dictionary over resets. The string with code 256 + i is the
+     * string with code <code>presetPrefixes[i]</code> followed by the
+     * character <code>presetCharacters[i]</code>.
+     * @param presetPrefixes The prefix codes. Each must be smaller than the
+     *                       code of its string.
+     * @param presetCharacters The last characters.
      */
-    public boolean isTraversing() {
-        return currentEntry != root;
+    public void preset(int[] presetPrefixes, byte[] presetCharacters) {
+        allocate(initialCapacity);
+        generation = 1;
+        stamp = (long)generation << keyBits;
+        for (int i = 0; i < presetPrefixes.length; ++i) {
+            put(presetPrefixes[i], presetCharacters[i] & 0xff, 256 + i, presetStamp);
+        }
+        presetSize = presetPrefixes.length;
+        reset();
+    }
+
+    /**
+     * Remove a string from the dictionary. Its code can then be given to
+     * another string with add(int, int).
+     * @param code The code of the string. It must not be a single character
+     *             or a preset string, and the string must not be the prefix
+     *             of another string.
+     */
+    public void remove(int code) {
+        delete(key(prefixes.getInt(code), characters.getByte(code) & 0xff));
+        lookedUpChar = -1;
+    }
+
+    /**
+     * @param code The code of a string of at least two characters.
+     * @return The code of the string without its last character.
+     */
+    public int getPrefix(int code) {
+        return prefixes.getInt(code);
     }
 
     /**
-     * @return The current string.
+     * @param code The code of a string of at least two characters.
+     * @return The last character of the string.
      */
-    public List<Integer> getString() {
-        List<Integer> res = new List<>();
-        LZWDictionaryEntry node = currentEntry;
-        while (node != null) {
-            res.add(node.getCode());
-            node = node.parent;
+    public byte getCharacter(int code) {
+        return characters.getByte(code);
+    }
+
+    /**
+     * Restart traversing from root.
+     */
+    public void restartTraverse() {
+        currentCode = -1;
+        lookedUpChar = -1;
+    }
+
+    /**
+     * Advance to a child node. The current string + character must be in the dictionary.
+     * @param character
+     */
+    public void advance(int character) {
+        if (currentCode == -1) {
+            currentCode = character;
+        } else if (lookedUpChar == character) {
+            currentCode = lookedUpCode;
+        } else {
+            currentCode = find(currentCode, character);
         }
-        res.reverse();
-        return res;
+        lookedUpChar = -1;
+    }
+
+    /**
+     * @return True if the current string is not empty.
+     */
+    public boolean isTraversing() {
+        return currentCode != -1;
     }
 }
@@ -0,0 +1,78 @@
+package tl15.lzw;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Reads the fixed-width LZW codes written by LZWFixedWidthWriter. The input
+ * is read in big blocks and the codes are taken out of them with short loads
+ * from a little-endian byte buffer.
+ */
+class LZWFixedWidthReader implements LZWCodeReader {
+    private final InputStream ins;
+    private final int codeSize;
+
+    /** A block of input. Its size is a multiple of 6 bytes. */
+    private final byte[] buffer = new byte[6 * 10922];
+    private final ByteBuffer view = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
+    private int position = 0;
+    private int limit = 0;
+
+    /** The second 12-bit code of a pair, or -1 if there is none. */
+    private int pending = -1;
+
+    /**
+     * @param ins The stream to read. Must be at the first code.
+     * @param codeSize The code size: 12 or 16.
+     */
+    LZWFixedWidthReader(InputStream ins, int codeSize) {
+        this.ins = ins;
+        this.codeSize = codeSize;
+    }
+
+    /**
+     * Read the next block of input.
+     * @return False if the input has ended.
+     * @throws IOException
+     */
+    private boolean refill() throws IOException {
+        limit = 0;
+        while (limit < buffer.length) {
+            int n = ins.read(buffer, limit, buffer.length - limit);
+            if (n == -1) {
+                break;
+            }
+            limit += n;
+        }
+        position = 0;
+        if (limit % ((codeSize == 16)? 2 : 3) != 0) {
+            throw new IllegalArgumentException("Bad file.");
+        }
+        return limit > 0;
+    }
+
+    @Override
+    public int read(int currentCodeSize) throws IOException {
+        int code;
+        if (pending != -1) {
+            code = pending;
+            pending = -1;
+        } else {
+            if (position == limit && !refill()) {
+                return -1;
+            }
+            if (codeSize == 16) {
+                code = view.getShort(position) & 0xffff;
+                position += 2;
+            } else {
+                int pair = (view.getShort(position) & 0xffff) | ((buffer[position + 2] & 0xff) << 16);
+                position += 3;
+                code = pair & 0xfff;
+                pending = pair >>> 12;
+            }
+        }
+        return (code != LZWFixedWidthWriter.padCode(codeSize))? code : -1;
+    }
+}
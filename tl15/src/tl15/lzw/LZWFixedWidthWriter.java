@@ -0,0 +1,107 @@
+package tl15.lzw;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Writes LZW codes of a fixed width of 12 or 16 bits as little-endian units
+ * of whole bytes, so that they can be read back with plain loads instead of
+ * bit by bit. 16-bit codes take two bytes each, and 12-bit codes are packed
+ * in pairs into three bytes: the first code is the low 12 bits of the pair.
+ *
+ * The data ends with the stream, except that an odd number of 12-bit codes
+ * is padded with the code <code>padCode(12)</code>, which the compressor
+ * never uses in the fixed-width mode since the code size does not grow.
+ */
+class LZWFixedWidthWriter implements LZWCodeWriter {
+    private final OutputStream outs;
+    private final int codeSize;
+
+    /** The codes not written to outs yet. Its size is a multiple of 6 bytes. */
+    private final byte[] buffer = new byte[6 * 10922];
+    private final ByteBuffer view = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
+    private int position = 0;
+
+    /** The first 12-bit code of a pair, or -1 if there is none. */
+    private int pending = -1;
+
+    /** The number of bytes written to outs. */
+    private long flushedBytes = 0;
+
+    /**
+     * @param outs The stream to write to.
+     * @param codeSize The code size: 12 or 16.
+     */
+    LZWFixedWidthWriter(OutputStream outs, int codeSize) {
+        this.outs = outs;
+        this.codeSize = codeSize;
+    }
+
+    /**
+     * @param codeSize The code size: 12 or 16.
+     * @return The code which pads the last pair of 12-bit codes.
+     */
+    static int padCode(int codeSize) {
+        return (1 << codeSize) - 2;
+    }
+
+    /**
+     * @param codeSize A code size.
+     * @return True if fixed-width codes can have the size.
+     */
+    static boolean isValidCodeSize(int codeSize) {
+        return codeSize == 12 || codeSize == 16;
+    }
+
+    @Override
+    public void write(int currentCodeSize, int code) throws IOException {
+        if (codeSize == 16) {
+            if (position == buffer.length) {
+                flushBuffer();
+            }
+            view.putShort(position, (short)code);
+            position += 2;
+        } else if (pending == -1) {
+            pending = code;
+        } else {
+            if (position == buffer.length) {
+                flushBuffer();
+            }
+            int pair = pending | (code << 12);
+            view.putShort(position, (short)pair);
+            buffer[position + 2] = (byte)(pair >>> 16);
+            position += 3;
+            pending = -1;
+        }
+    }
+
+    /**
+     * Write the buffered codes to the stream.
+     * @throws IOException
+     */
+    private void flushBuffer() throws IOException {
+        outs.write(buffer, 0, position);
+        flushedBytes += position;
+        position = 0;
+    }
+
+    /**
+     * Pad the last pair of 12-bit codes if needed and write everything to the
+     * stream. The stream is not flushed.
+     * @throws IOException
+     */
+    @Override
+    public void finish() throws IOException {
+        if (pending != -1) {
+            write(codeSize, padCode(codeSize));
+        }
+        flushBuffer();
+    }
+
+    @Override
+    public long getBitCount() {
+        return 8 * (flushedBytes + position) + ((pending != -1)? 12 : 0);
+    }
+}
@@ -0,0 +1,97 @@
+package tl15.lzw;
+
+import java.io.IOException;
+import java.util.Arrays;
+import tl15.huffman.HuffmanCodeTable;
+import tl15.huffman.HuffmanDecodeTable;
+import tl15.utils.BitInputStream;
+import static tl15.utils.Math.twoTo;
+
+/**
+ * Reads the Huffman-coded LZW codes written by LZWHuffmanWriter.
+ */
+class LZWHuffmanReader implements LZWCodeReader {
+    private final BitInputStream ins;
+    private final int maxCodeSize;
+
+    /** The decoding tables of the current block. */
+    private HuffmanDecodeTable table = null;
+
+    /**
+     * For each code size, the index of its codes in table, or -1 if the
+     * codes are plain.
+     */
+    private final int[] tableIndex;
+
+    /** The number of codes left in the current block. */
+    private int remaining = 0;
+
+    private boolean ended = false;
+
+    /**
+     * @param ins The stream to read. Must be at the first block.
+     * @param maxCodeSize The maximum code size. Must be valid for LZWHuffmanWriter.
+     */
+    LZWHuffmanReader(BitInputStream ins, int maxCodeSize) {
+        this.ins = ins;
+        this.maxCodeSize = maxCodeSize;
+        tableIndex = new int[maxCodeSize + 1];
+    }
+
+    /**
+     * Read the header of the next block.
+     * @return False if there are no more blocks.
+     * @throws IOException
+     */
+    private boolean nextBlock() throws IOException {
+        int size = (ins.bitsRemaining(32) == 32)? ins.readBitsInt(32) : -1;
+        if (size < 0) {
+            throw new IllegalArgumentException("Bad file.");
+        }
+        if (size == 0) {
+            return false;
+        }
+        HuffmanCodeTable[] tables = new HuffmanCodeTable[maxCodeSize + 1];
+        int tableCount = 0;
+        for (int codeSize = 9; codeSize <= maxCodeSize; ++codeSize) {
+            if (ins.bitsRemaining(2) < 2) {
+                throw new IllegalArgumentException("Bad file.");
+            }
+            int mode = ins.readBitsInt(2);
+            tableIndex[codeSize] = -1;
+            if (mode == LZWHuffmanWriter.huffman) {
+                tableIndex[codeSize] = tableCount;
+                tables[tableCount++] = HuffmanCodeTable.readCanonical(ins, twoTo(codeSize));
+            }
+        }
+        table = (tableCount > 0)? new HuffmanDecodeTable(Arrays.copyOf(tables, tableCount)) : null;
+        remaining = size;
+        return true;
+    }
+
+    @Override
+    public int read(int codeSize) throws IOException {
+        if (remaining == 0) {
+            if (ended || !nextBlock()) {
+                ended = true;
+                return -1;
+            }
+        }
+        if (codeSize > maxCodeSize) {
+            throw new IllegalArgumentException("Bad file.");
+        }
+        --remaining;
+        if (tableIndex[codeSize] == -1) {
+            if (ins.bitsRemaining(codeSize) < codeSize) {
+                throw new IllegalArgumentException("Bad file.");
+            }
+            return ins.readBitsInt(codeSize);
+        }
+        try {
+            return table.decode(ins, tableIndex[codeSize]);
+        } catch (IllegalStateException e) {
+            // the stream ended in the middle of a code
+            throw new IllegalArgumentException("Bad file.");
+        }
+    }
+}
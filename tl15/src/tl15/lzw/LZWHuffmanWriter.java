@@ -0,0 +1,169 @@
+package tl15.lzw;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import tl15.huffman.Huffman;
+import tl15.huffman.HuffmanCodeTable;
+import tl15.utils.BitOutputStream;
+import static tl15.utils.Math.twoTo;
+
+/**
+ * Writes LZW codes with canonical Huffman codes built for blocks of codes.
+ * Some codes are used more often than others, for example the single
+ * characters of data which does not compress well, so this can take fewer
+ * bits than writing every code with the current code size. The codes are
+ * buffered until a block is full and then written in one go, so the
+ * compressor still reads its input only once.
+ *
+ * The codes written with each code size get a code table of their own,
+ * whose alphabet has 2^codeSize characters, so the Huffman codes never
+ * spend bits on codes which cannot occur yet. The grow and reset codes are
+ * written like the other codes.
+ *
+ * A block consists of:
+ *  - the number of codes in the block in 32 bits
+ *  - for each code size from 9 to the maximum code size, 2 bits telling how
+ *    the codes of that size are written: 0 if there are none, 1 if in
+ *    codeSize bits as usual and 2 if with Huffman codes, in which case the
+ *    code lengths follow, written by HuffmanCodeTable.writeLengths()
+ *  - the codes in the order they were written
+ * Plain codes are used when the Huffman codes would take more space with
+ * their code lengths. The last block is followed by 32 zero bits.
+ */
+class LZWHuffmanWriter implements LZWCodeWriter {
+    /** The number of codes in a full block. */
+    static final int blockSize = 1 << 18;
+
+    /** How the codes of a code size are written. */
+    static final int unused = 0, plain = 1, huffman = 2;
+
+    private final BitOutputStream outs;
+    private final int maxCodeSize;
+
+    /** The codes of the current block, each as <code>(codeSize &lt;&lt; 16) | code</code>. */
+    private final int[] block = new int[blockSize];
+    private int size = 0;
+
+    /** The average number of bits per code in the last block. */
+    private double bitsPerCode;
+
+    /**
+     * @param outs The stream to write to.
+     * @param maxCodeSize The maximum code size. Must be valid.
+     * @see #isValidCodeSize(int)
+     */
+    LZWHuffmanWriter(BitOutputStream outs, int maxCodeSize) {
+        this.outs = outs;
+        this.maxCodeSize = maxCodeSize;
+        bitsPerCode = maxCodeSize;
+    }
+
+    /**
+     * @param maxCodeSize A maximum code size between 9..31.
+     * @return True if the codes can be Huffman-coded with the size. The
+     *         alphabets of bigger sizes would take too long to build and
+     *         store for each block.
+     */
+    static boolean isValidCodeSize(int maxCodeSize) {
+        return maxCodeSize <= 16;
+    }
+
+    @Override
+    public void write(int codeSize, int code) throws IOException {
+        if (size == blockSize) {
+            writeBlock();
+        }
+        block[size++] = (codeSize << 16) | code;
+    }
+
+    /**
+     * Write the current block to the stream.
+     * @throws IOException
+     */
+    private void writeBlock() throws IOException {
+        int[][] freqs = new int[maxCodeSize + 1][];
+        for (int codeSize = 9; codeSize <= maxCodeSize; ++codeSize) {
+            freqs[codeSize] = new int[twoTo(codeSize)];
+        }
+        for (int i = 0; i < size; ++i) {
+            ++freqs[block[i] >>> 16][block[i] & 0xffff];
+        }
+
+        long startBits = outs.getBitCount();
+        outs.writeBits(32, size);
+        long[][] codes = new long[maxCodeSize + 1][];
+        int[][] lengths = new int[maxCodeSize + 1][];
+        for (int codeSize = 9; codeSize <= maxCodeSize; ++codeSize) {
+            long count = 0;
+            for (int f : freqs[codeSize]) {
+                count += f;
+            }
+            if (count == 0) {
+                outs.writeBits(2, unused);
+                continue;
+            }
+            HuffmanCodeTable table = Huffman.canonicalCodes(freqs[codeSize], 0);
+            long huffmanBits = lengthsBits(table);
+            for (int c = 0; c < freqs[codeSize].length; ++c) {
+                huffmanBits += (long)freqs[codeSize][c] * table.lengths[c];
+            }
+            if (huffmanBits < count * codeSize) {
+                outs.writeBits(2, huffman);
+                table.writeLengths(outs);
+                codes[codeSize] = table.codes;
+                lengths[codeSize] = table.lengths;
+            } else {
+                outs.writeBits(2, plain);
+            }
+        }
+
+        for (int i = 0; i < size; ++i) {
+            int codeSize = block[i] >>> 16;
+            int code = block[i] & 0xffff;
+            if (codes[codeSize] != null) {
+                outs.writeBits(lengths[codeSize][code], codes[codeSize][code]);
+            } else {
+                outs.writeBits(codeSize, code);
+            }
+        }
+        bitsPerCode = (double)(outs.getBitCount() - startBits) / size;
+        size = 0;
+    }
+
+    /**
+     * @param table A code table.
+     * @return The number of bits table.writeLengths() writes.
+     * @throws IOException
+     */
+    private static long lengthsBits(HuffmanCodeTable table) throws IOException {
+        BitOutputStream counter = new BitOutputStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        });
+        table.writeLengths(counter);
+        return counter.getBitCount();
+    }
+
+    /**
+     * Write the last block and the end marker to the stream. The stream is
+     * not flushed.
+     * @throws IOException
+     */
+    @Override
+    public void finish() throws IOException {
+        if (size > 0) {
+            writeBlock();
+        }
+        outs.writeBits(32, 0);
+    }
+
+    /**
+     * @return The number of bits written so far, plus the codes of the
+     *         current block at the rate of the last block.
+     */
+    @Override
+    public long getBitCount() {
+        return outs.getBitCount() + (long)(size * bitsPerCode);
+    }
+}
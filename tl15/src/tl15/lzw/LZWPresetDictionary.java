@@ -0,0 +1,196 @@
+package tl15.lzw;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import tl15.utils.BitInputStream;
+import tl15.utils.BitOutputStream;
+
+/**
+ * An LZW dictionary built in advance from a sample corpus. The compressor
+ * and the decompressor both start from the preset strings instead of just
+ * the single characters, so even a short message is coded with long
+ * strings from the start, which pays off for small messages similar to the
+ * corpus.
+ *
+ * The strings get the codes right after 255 and are kept like the strings
+ * of any LZW dictionary: the string with code 256 + i is the string with
+ * code <code>prefixes[i]</code> followed by the character
+ * <code>characters[i]</code>. A dictionary is identified by an ID calculated
+ * from its strings.
+ *
+ * A dictionary never changes after construction, so it can be shared
+ * between threads and codecs freely.
+ */
+public class LZWPresetDictionary {
+    private static final int dictionaryMagik = ('T' << 24) | ('L' << 16) | (6 << 8) | 6;
+
+    private final int id;
+    private final int[] prefixes;
+    private final byte[] characters;
+
+    private LZWPresetDictionary(int[] prefixes, byte[] characters) {
+        this.prefixes = prefixes;
+        this.characters = characters;
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < prefixes.length; ++i) {
+            crc.update(prefixes[i] >>> 24);
+            crc.update(prefixes[i] >>> 16);
+            crc.update(prefixes[i] >>> 8);
+            crc.update(prefixes[i]);
+            crc.update(characters[i]);
+        }
+        id = (int)crc.getValue();
+    }
+
+    /**
+     * Train a dictionary from a sample corpus. The corpus is parsed like in
+     * LZW compression without limiting the dictionary, and the strings the
+     * parse went through most often are kept. A string is gone through at
+     * least as often as the longer strings starting with it, so the prefixes
+     * of the kept strings are kept too.
+     * @param corpus The corpus. All remaining data is consumed.
+     * @param maxStrings The maximum number of strings in the dictionary.
+     * @return The dictionary.
+     * @throws IOException
+     */
+    public static LZWPresetDictionary train(InputStream corpus, int maxStrings) throws IOException {
+        LZWDictionary dict = new LZWDictionary();
+        int[] hits = new int[1 << 12];
+        int b;
+        while ((b = corpus.read()) != -1) {
+            if (!dict.hasNextChar(b)) {
+                dict.add(b);
+                dict.restartTraverse();
+            }
+            dict.advance(b);
+            int code = dict.getCurrentCode();
+            if (code >= 256) {
+                if (code >= hits.length) {
+                    hits = Arrays.copyOf(hits, 2 * hits.length);
+                }
+                ++hits[code];
+            }
+        }
+
+        // most hits first, and of equal ones the smallest code, so that a
+        // prefix always comes before the longer strings
+        int stringCount = dict.getNextCode() - 256;
+        long[] order = new long[stringCount];
+        for (int i = 0; i < stringCount; ++i) {
+            order[i] = ((long)(Integer.MAX_VALUE - hits[256 + i]) << 32) | (256 + i);
+        }
+        Arrays.sort(order);
+        boolean[] kept = new boolean[dict.getNextCode()];
+        for (int i = 0; i < stringCount && i < maxStrings && hits[(int)order[i]] > 0; ++i) {
+            kept[(int)order[i]] = true;
+        }
+
+        // number the kept strings in their original order
+        int[] newCodes = new int[dict.getNextCode()];
+        int keptCount = 0;
+        for (int code = 0; code < dict.getNextCode(); ++code) {
+            if (code < 256) {
+                newCodes[code] = code;
+            } else if (kept[code]) {
+                newCodes[code] = 256 + keptCount++;
+            }
+        }
+        int[] prefixes = new int[keptCount];
+        byte[] characters = new byte[keptCount];
+        for (int code = 256; code < dict.getNextCode(); ++code) {
+            if (kept[code]) {
+                prefixes[newCodes[code] - 256] = newCodes[dict.getPrefix(code)];
+                characters[newCodes[code] - 256] = dict.getCharacter(code);
+            }
+        }
+        return new LZWPresetDictionary(prefixes, characters);
+    }
+
+    /**
+     * @return The ID of the dictionary.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return The number of strings in the dictionary.
+     */
+    public int size() {
+        return prefixes.length;
+    }
+
+    /**
+     * @return The prefix codes of the strings. Must not be modified.
+     */
+    int[] getPrefixes() {
+        return prefixes;
+    }
+
+    /**
+     * @return The last characters of the strings. Must not be modified.
+     */
+    byte[] getCharacters() {
+        return characters;
+    }
+
+    /**
+     * @param code A code.
+     * @return The number of bits needed for the codes below it.
+     */
+    private static int bitsBelow(int code) {
+        return 32 - Integer.numberOfLeadingZeros(code - 1);
+    }
+
+    /**
+     * Write the dictionary to a stream.
+     * @param outs The stream. It is flushed.
+     * @throws IOException
+     */
+    public void save(OutputStream outs) throws IOException {
+        BitOutputStream bouts = new BitOutputStream(outs);
+        bouts.writeBits(32, dictionaryMagik);
+        bouts.writeBits(32, prefixes.length);
+        for (int i = 0; i < prefixes.length; ++i) {
+            bouts.writeBits(bitsBelow(256 + i), prefixes[i]);
+            bouts.writeBits(8, characters[i] & 0xff);
+        }
+        bouts.flush();
+    }
+
+    /**
+     * Read a dictionary written by save().
+     * @param ins The stream.
+     * @return The dictionary.
+     * @throws IOException
+     */
+    public static LZWPresetDictionary load(InputStream ins) throws IOException {
+        BitInputStream bins = new BitInputStream(ins);
+        int magik = (bins.bitsRemaining(32) == 32)? bins.readBitsInt(32) : 0;
+        if (magik != dictionaryMagik) {
+            throw new IllegalArgumentException("Bad dictionary file.");
+        }
+        int count = (bins.bitsRemaining(32) == 32)? bins.readBitsInt(32) : -1;
+        if (count < 0) {
+            throw new IllegalArgumentException("Bad dictionary file.");
+        }
+        int[] prefixes = new int[count];
+        byte[] characters = new byte[count];
+        for (int i = 0; i < count; ++i) {
+            int prefixBits = bitsBelow(256 + i);
+            if (bins.bitsRemaining(prefixBits + 8) < prefixBits + 8) {
+                throw new IllegalArgumentException("Bad dictionary file.");
+            }
+            int prefix = bins.readBitsInt(prefixBits);
+            if (prefix >= 256 + i) {
+                throw new IllegalArgumentException("Bad dictionary file.");
+            }
+            prefixes[i] = prefix;
+            characters[i] = (byte)bins.readBitsInt(8);
+        }
+        return new LZWPresetDictionary(prefixes, characters);
+    }
+}
@@ -0,0 +1,117 @@
+package tl15.lzw;
+
+import tl15.utils.LargeArray;
+import static tl15.utils.Math.max;
+
+/**
+ * The codes of an LZW dictionary ordered by the time they were last used.
+ *
+ * The list is doubly linked through two arrays indexed by code, so moving a
+ * code costs a few array writes and nothing is allocated. The arrays move
+ * off the heap when they grow large, like the dictionary. Only the codes
+ * which can be evicted are in the list, i.e. not the single characters or
+ * the strings of a preset dictionary.
+ */
+class LZWRecencyList {
+    private static final int none = -1;
+
+    /** The code used next more recently, or none. */
+    private LargeArray newer = new LargeArray(0, 4);
+    /** The code used next less recently, or none. */
+    private LargeArray older = new LargeArray(0, 4);
+
+    private int newest = none;
+    private int oldest = none;
+
+    /**
+     * Remove all codes from the list.
+     */
+    void clear() {
+        newest = none;
+        oldest = none;
+    }
+
+    /**
+     * @return The least recently used code, or -1 if the list is empty.
+     */
+    int getOldest() {
+        return oldest;
+    }
+
+    /**
+     * Make sure that the arrays can hold a code.
+     * @param code The code.
+     */
+    private void ensureCapacity(int code) {
+        if (code >= newer.length()) {
+            long capacity = max(2 * newer.length(), code + 1L);
+            newer = newer.copyOf(capacity);
+            older = older.copyOf(capacity);
+        }
+    }
+
+    /**
+     * Add a code which is not in the list as the most recently used one.
+     * @param code The code.
+     */
+    void addNewest(int code) {
+        ensureCapacity(code);
+        newer.putInt(code, none);
+        older.putInt(code, newest);
+        if (newest != none) {
+            newer.putInt(newest, code);
+        } else {
+            oldest = code;
+        }
+        newest = code;
+    }
+
+    /**
+     * Add a code which is not in the list right after another code, so that
+     * it counts as used just a bit less recently.
+     * @param code The code to add.
+     * @param after A code in the list.
+     */
+    void addAfter(int code, int after) {
+        ensureCapacity(code);
+        int next = older.getInt(after);
+        newer.putInt(code, after);
+        older.putInt(code, next);
+        older.putInt(after, code);
+        if (next != none) {
+            newer.putInt(next, code);
+        } else {
+            oldest = code;
+        }
+    }
+
+    /**
+     * Remove a code from the list.
+     * @param code A code in the list.
+     */
+    void remove(int code) {
+        int n = newer.getInt(code);
+        int o = older.getInt(code);
+        if (n != none) {
+            older.putInt(n, o);
+        } else {
+            newest = o;
+        }
+        if (o != none) {
+            newer.putInt(o, n);
+        } else {
+            oldest = n;
+        }
+    }
+
+    /**
+     * Mark a code as the most recently used one.
+     * @param code A code in the list.
+     */
+    void moveToNewest(int code) {
+        if (code != newest) {
+            remove(code);
+            addNewest(code);
+        }
+    }
+}
@@ -1,15 +1,23 @@
 package tl15.main;
 
 import tl15.utils.Options;
+import tl15.huffman.AdaptiveHuffman;
+import tl15.huffman.ContextHuffman;
 import tl15.huffman.Huffman;
+import tl15.huffman.StaticHuffmanTable;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import tl15.lzw.LZW;
+import tl15.lzw.LZWCodec;
+import tl15.lzw.LZWConfig;
+import tl15.lzw.LZWPresetDictionary;
+import tl15.utils.MappedInputStream;
+import static tl15.utils.Math.twoTo;
 
 /**
  * The user interface.
@@ -23,11 +31,22 @@ public class Main {
      */
     public static void initOptions(String[] args) {
         opts = new Options("java -jar tl15.jar");
-        opts.addOption("algorithm", "a", "algorithm_name", "lzw", "Choose the algorithm to use. Available algorithms: huffman, lzw");
+        opts.addOption("algorithm", "a", "algorithm_name", "lzw", "Choose the algorithm to use. Available algorithms: huffman, adaptive-huffman, context-huffman, lzw, lzw-huffman (LZW with Huffman-coded codes)");
         opts.addOption("inputFile", "i", "input_file", null, "The file to compress/decompress");   // TODO: allow -/empty for stdin
         opts.addOption("outputFile", "o", "output_file", null, "The file to write the compressed/decompressed data to");   // TODO: allow -/empty for stdout
         opts.addFlag("decompress", "d", "Decompress (default is to compress)");
-        opts.addOption("lzw.codeSize", "ls", "code_size", 12, "The maximum code size for LZW compression. Must be between 9..31");
+        opts.addOption("lzw.codeSize", "ls", "code_size", "12", "The maximum code size for LZW compression. Must be between 9..31 (9..16 for lzw-huffman), or auto to choose it by compressing the beginning of the input with several code sizes");
+        opts.addOption("lzw.mode", "lm", "mode", "reset", "What to do when the LZW dictionary is full. Available modes: reset (start over), lru (replace the least recently used strings)");
+        opts.addOption("lzw.resetThreshold", "lr", "percent", 0, "Keep a full LZW dictionary until the compression ratio gets this many percent worse than its best, or 0 to reset it as soon as it is full");
+        opts.addOption("lzw.chunkSize", "lp", "kilobytes", 0, "Compress with LZW in independent chunks of this size on all processors, or 0 to use one thread. Must be 0 or between 1..2097151");
+        opts.addFlag("lzw.fixedWidth", "lf", "Write LZW codes with a fixed width in whole bytes for faster decompression. Needs -ls 12 or -ls 16");
+        opts.addOption("lzw.preset", "lt", "dictionary_file", null, "Start LZW from a preset dictionary read from this file. The same one is needed for decompressing");
+        opts.addFlag("lzw.train", "ltrain", "Train a preset LZW dictionary from the input file and write it to the output file");
+        opts.addOption("huffman.maxCodeLength", "hl", "max_length", 0, "The maximum Huffman code length, or 0 for no limit. Must be 0 or between 8..64");
+        opts.addOption("huffman.blockSize", "hb", "kilobytes", 0, "Compress with Huffman in independent blocks of this size, or 0 to use one block. Must be 0 or between 1..2097151");
+        opts.addFlag("huffman.interleaved", "hi", "Split each Huffman block into 4 interleaved streams for faster decompression. Needs -hb");
+        opts.addOption("huffman.table", "ht", "table_file", null, "Use a pretrained Huffman table from this file instead of storing one in the compressed file");
+        opts.addFlag("huffman.train", "htrain", "Train a Huffman table from the input file and write it to the output file");
         opts.addFlag("help", "h", "Show this usage information");
 
         if (!opts.parse(args) || opts.getFlagState("help")) {
@@ -43,7 +62,8 @@ public class Main {
         // check that the arguments are sane
         boolean fail = false;
         String alg = opts.getOptionString("algorithm");
-        if (!alg.equals("huffman") && !alg.equals("lzw")) {
+        if (!alg.equals("huffman") && !alg.equals("adaptive-huffman") && !alg.equals("context-huffman") && !alg.equals("lzw")
+                && !alg.equals("lzw-huffman")) {
             System.out.println("Unknown algorithm: " + alg);
             fail = true;
         }
@@ -55,15 +75,95 @@ public class Main {
             System.out.println("no output file given");
             fail = true;
         }
-        int cs = opts.getOptionInteger("lzw.codeSize");
-        if (cs < 9 || cs > 31) {
-            return;
+        int hl = opts.getOptionInteger("huffman.maxCodeLength");
+        if (hl != 0 && (hl < 8 || hl > 64)) {
+            System.out.println("Bad maximum Huffman code length: " + hl);
+            fail = true;
+        }
+        int hb = opts.getOptionInteger("huffman.blockSize");
+        if (hb < 0 || hb >= 2097152) {
+            System.out.println("Bad Huffman block size: " + hb);
+            fail = true;
+        }
+        if (opts.getFlagState("huffman.interleaved") && hb == 0) {
+            System.out.println("Interleaved Huffman streams need a block size");
+            fail = true;
+        }
+        String cs = opts.getOptionString("lzw.codeSize");
+        // the code size, or -1 if it is not a number
+        int n = -1;
+        if (!cs.equals("auto")) {
+            try {
+                n = Integer.parseInt(cs);
+            } catch (NumberFormatException e) {
+                n = -1;
+            }
+            if (n < 9 || n > 31) {
+                System.out.println("Bad maximum LZW code size: " + cs);
+                fail = true;
+            }
+        } else if (opts.getFlagState("lzw.train")) {
+            System.out.println("Training an LZW dictionary needs a code size");
+            fail = true;
+        }
+        if (opts.getFlagState("lzw.fixedWidth") && !opts.getFlagState("decompress")) {
+            if (!cs.equals("12") && !cs.equals("16")) {
+                System.out.println("Fixed-width LZW codes must be 12 or 16 bits");
+                fail = true;
+            }
+            if (opts.getOptionInteger("lzw.chunkSize") != 0) {
+                System.out.println("Fixed-width LZW codes cannot be compressed in chunks");
+                fail = true;
+            }
+        }
+        if (alg.equals("lzw-huffman") && !opts.getFlagState("decompress") && !opts.getFlagState("lzw.train")) {
+            if (n > 16 || cs.equals("auto")) {
+                System.out.println("Huffman-coded LZW codes must be at most 16 bits");
+                fail = true;
+            }
+            if (opts.getFlagState("lzw.fixedWidth")) {
+                System.out.println("Fixed-width LZW codes cannot be Huffman-coded");
+                fail = true;
+            }
+            if (opts.getOptionInteger("lzw.chunkSize") != 0) {
+                System.out.println("Huffman-coded LZW codes cannot be compressed in chunks");
+                fail = true;
+            }
+        }
+        int lp = opts.getOptionInteger("lzw.chunkSize");
+        if (lp < 0 || lp >= 2097152) {
+            System.out.println("Bad LZW chunk size: " + lp);
+            fail = true;
+        }
+        String lm = opts.getOptionString("lzw.mode");
+        if (!lm.equals("reset") && !lm.equals("lru")) {
+            System.out.println("Unknown LZW mode: " + lm);
+            fail = true;
+        }
+        if (opts.getOptionInteger("lzw.resetThreshold") < 0) {
+            System.out.println("Bad LZW reset threshold: " + opts.getOptionInteger("lzw.resetThreshold"));
+            fail = true;
         }
         if (fail) {
             opts = null;
         }
     }
 
+    /**
+     * Open a file for reading. A regular file is read through memory
+     * mappings, anything else through a buffer.
+     * @param name The name of the file.
+     * @return The stream.
+     * @throws IOException
+     */
+    private static InputStream openInput(String name) throws IOException {
+        File file = new File(name);
+        if (file.isFile()) {
+            return new MappedInputStream(new FileInputStream(file).getChannel());
+        }
+        return new BufferedInputStream(new FileInputStream(file));
+    }
+
     public static void main(String[] args) throws IOException {
 //        args = new String[]{"-i", "test.orig", "-o", "test.lc", "-ls", "16"};
 //        args = new String[]{"-i", "test.lc", "-o", "test.ld", "-d"};
@@ -76,20 +176,84 @@ public class Main {
         String inp = opts.getOptionString("inputFile");
         String outp = opts.getOptionString("outputFile");
 
-        try (InputStream ins = new BufferedInputStream(new FileInputStream(inp));
+        try (InputStream ins = openInput(inp);
              OutputStream outs = new BufferedOutputStream(new FileOutputStream(outp)))
         {
             long start = System.nanoTime();
-            if (opts.getOptionString("algorithm").equals("lzw")) {
+            boolean lzw = opts.getOptionString("algorithm").equals("lzw") || opts.getOptionString("algorithm").equals("lzw-huffman");
+            if (lzw && opts.getFlagState("lzw.train")) {
+                // half of the codes are left for the strings of the data
+                LZWPresetDictionary preset = LZWPresetDictionary.train(ins, twoTo(Integer.parseInt(opts.getOptionString("lzw.codeSize")) - 1) - 256);
+                preset.save(outs);
+                System.out.println("Trained dictionary " + Integer.toHexString(preset.getId()) + " with " + preset.size() + " strings");
+            } else if (lzw) {
+                LZWPresetDictionary preset = null;
+                if (opts.getOptionString("lzw.preset") != null) {
+                    try (InputStream presetIns = new BufferedInputStream(new FileInputStream(opts.getOptionString("lzw.preset")))) {
+                        preset = LZWPresetDictionary.load(presetIns);
+                    }
+                }
+                LZWConfig config = new LZWConfig().resetThreshold(opts.getOptionInteger("lzw.resetThreshold"))
+                        .lru(opts.getOptionString("lzw.mode").equals("lru")).preset(preset);
+                if (!opts.getOptionString("lzw.codeSize").equals("auto")) {
+                    config.maxCodeSize(Integer.parseInt(opts.getOptionString("lzw.codeSize")));
+                } else if (!opts.getFlagState("decompress")) {
+                    config.maxCodeSize(LZWCodec.chooseMaxCodeSize(ins, config, Runtime.getRuntime().availableProcessors()));
+                } else {
+                    // the code size is read from the header
+                    config.maxCodeSize(31);
+                }
+                // the fixed width and the Huffman mode are read from the header in decompression
+                boolean compress = !opts.getFlagState("decompress");
+                if (compress && opts.getOptionString("algorithm").equals("lzw-huffman")) {
+                    config.codeFormat(LZWConfig.CodeFormat.HUFFMAN);
+                } else if (compress && opts.getFlagState("lzw.fixedWidth")) {
+                    config.codeFormat(LZWConfig.CodeFormat.FIXED_WIDTH);
+                }
+                LZWCodec codec = new LZWCodec(config);
+                int chunkSize = opts.getOptionInteger("lzw.chunkSize");
+                if (opts.getFlagState("decompress")) {
+                    codec.decompressFile(ins, outs);
+                } else if (chunkSize > 0) {
+                    codec.compressFileParallel(ins, outs, chunkSize * 1024, Runtime.getRuntime().availableProcessors());
+                } else {
+                    codec.compressFile(ins, outs);
+                }
+            } else if (opts.getOptionString("algorithm").equals("adaptive-huffman")) {
+                if (!opts.getFlagState("decompress")) {
+                    AdaptiveHuffman.compressFile(ins, outs);
+                } else {
+                    AdaptiveHuffman.decompressFile(ins, outs);
+                }
+            } else if (opts.getOptionString("algorithm").equals("context-huffman")) {
+                if (!opts.getFlagState("decompress")) {
+                    ContextHuffman.compressFile(ins, outs);
+                } else {
+                    ContextHuffman.decompressFile(ins, outs);
+                }
+            } else if (opts.getFlagState("huffman.train")) {
+                StaticHuffmanTable table = StaticHuffmanTable.train(ins);
+                table.save(outs);
+                System.out.println("Trained table " + Integer.toHexString(table.getId()));
+            } else if (opts.getOptionString("huffman.table") != null) {
+                StaticHuffmanTable table;
+                try (InputStream tableIns = new BufferedInputStream(new FileInputStream(opts.getOptionString("huffman.table")))) {
+                    table = StaticHuffmanTable.load(tableIns);
+                }
                 if (!opts.getFlagState("decompress")) {
-                    LZW.init(opts.getOptionInteger("lzw.codeSize"));
-                    LZW.compressFile(ins, outs);
+                    table.compressFile(ins, outs);
                 } else {
-                    LZW.decompressFile(ins, outs);
+                    table.decompressFile(ins, outs);
                 }
             } else {
                 if (!opts.getFlagState("decompress")) {
-                    Huffman.compressFile(ins, outs);
+                    int blockSize = opts.getOptionInteger("huffman.blockSize");
+                    if (blockSize > 0) {
+                        Huffman.compressBlocks(ins, outs, blockSize * 1024, opts.getOptionInteger("huffman.maxCodeLength"),
+                                               opts.getFlagState("huffman.interleaved"));
+                    } else {
+                        Huffman.compressFile(ins, outs, opts.getOptionInteger("huffman.maxCodeLength"));
+                    }
                 } else {
                     Huffman.decompressFile(ins, outs);
                 }
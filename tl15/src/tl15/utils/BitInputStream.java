@@ -2,31 +2,97 @@ package tl15.utils;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 /**
  * A bit input stream.
+ *
+ * The underlying stream is read in big blocks into a byte buffer, and the
+ * bits are taken from it into a 64-bit word several bytes at a time, so
+ * reading a code costs a few shifts. Since the stream reads ahead, the
+ * underlying stream must not be used directly after this one has been
+ * created.
  */
 public class BitInputStream extends InputStream {
+    /** The size of the byte buffer. */
+    private static final int bufferSize = 1 << 14;
+
     private final InputStream ins;
 
+    /** Bytes read from ins, of which those in position..limit-1 are not yet in bits. */
+    private final byte[] bytes = new byte[bufferSize];
+    private final ByteBuffer view = ByteBuffer.wrap(bytes);
+    private int position = 0;
+    private int limit = 0;
+
+    /** True if ins has ended. */
+    private boolean ended = false;
+
     /**
-     * Position in the current byte. 8 indicates a new byte must be read from ins.
+     * Bits taken from bytes but not yet consumed. The last bufferedBits bits
+     * are valid and the next bit of the stream is the most significant of
+     * them.
      */
-    private int bytePos = 8;
+    private long buffer = 0;
 
     /**
-     * The current byte. bytePos is a 0-based index into this.
+     * The number of valid bits in buffer, 0..63.
      */
-    private int curByte = 0;
+    private int bufferedBits = 0;
 
     /**
-     * 
+     *
      * @param ins The stream to convert into a bit stream.
      */
     public BitInputStream(InputStream ins) {
         this.ins = ins;
     }
 
+    /**
+     * Make sure at least n bits are buffered, unless the stream ends before.
+     * @param n Can be between 0..56.
+     * @throws IOException
+     */
+    private void fill(int n) throws IOException {
+        while (bufferedBits < n && refill()) {
+        }
+    }
+
+    /**
+     * Move as many whole bytes into buffer as fit, reading ins if needed.
+     * @return False if there were no bytes left.
+     * @throws IOException
+     */
+    private boolean refill() throws IOException {
+        if (limit - position < 8 && !ended) {
+            System.arraycopy(bytes, position, bytes, 0, limit - position);
+            limit -= position;
+            position = 0;
+            int n = ins.read(bytes, limit, bufferSize - limit);
+            if (n == -1) {
+                ended = true;
+            } else {
+                limit += n;
+            }
+        }
+        if (position == limit) {
+            return false;
+        }
+        int count = (63 - bufferedBits) >>> 3;
+        if (limit - position >= 8) {
+            long word = view.getLong(position);
+            buffer = (buffer << (8 * count)) | (word >>> (64 - 8 * count));
+            position += count;
+            bufferedBits += 8 * count;
+        } else {
+            for (; count > 0 && position < limit; --count) {
+                buffer = (buffer << 8) | (bytes[position++] & 0xff);
+                bufferedBits += 8;
+            }
+        }
+        return true;
+    }
+
     /**
      * Read bits from the stream.
      * @param bitsToRead How many bits to read. Can be between 0..32.
@@ -35,30 +101,133 @@ public class BitInputStream extends InputStream {
      *         Null is returned in case there were not enough bits in the stream.
      *         In this case the last bits of the stream are lost forever.
      * @throws java.io.IOException
+     * @see #readBitsInt(int)
      */
     public Integer readBits(int bitsToRead) throws IOException {
-        int result = 0;
-        while (bitsToRead > 0) {
-            if (bytePos == 8) {
-                curByte = ins.read();
-                if (curByte == -1) {
-                    curByte = 0;
-                    return null;
-                }
-                bytePos = 0;
-            }
-            if ((curByte & (0x80 >> bytePos)) != 0) {
-                result |= 1 << (bitsToRead - 1);
-            }
-            ++bytePos;
-            --bitsToRead;
+        if (bitsRemaining(bitsToRead) < bitsToRead) {
+            bufferedBits = 0;
+            return null;
         }
+        return readBitsInt(bitsToRead);
+    }
+
+    /**
+     * Read bits from the stream without boxing them.
+     * @param bitsToRead How many bits to read. Can be between 0..32. Must not
+     *                   be more than the number of bits left in the stream,
+     *                   which can be checked with bitsRemaining().
+     * @return The bits read are the last n bits of the return value, in the order
+     *         they were in the stream. The other bits of the return value are zero.
+     * @throws IOException
+     * @see #bitsRemaining(int)
+     */
+    public int readBitsInt(int bitsToRead) throws IOException {
+        int result = peekBits(bitsToRead);
+        consumeBits(bitsToRead);
         return result;
     }
 
+    /**
+     * Look at the next bits of the stream without consuming them.
+     * @param bitsToPeek How many bits to look at. Can be between 0..32.
+     * @return The next bitsToPeek bits as the last bits of the return value,
+     *         in the order they are in the stream. If the stream ends before
+     *         that, the missing bits are zeroes.
+     * @throws IOException
+     */
+    public int peekBits(int bitsToPeek) throws IOException {
+        if (bufferedBits < bitsToPeek) {
+            fill(bitsToPeek);
+        }
+        long mask = (1L << bitsToPeek) - 1;
+        if (bufferedBits >= bitsToPeek) {
+            return (int)((buffer >>> (bufferedBits - bitsToPeek)) & mask);
+        } else {
+            return (int)((buffer << (bitsToPeek - bufferedBits)) & mask);
+        }
+    }
+
+    /**
+     * Skip bits which have already been looked at with peekBits().
+     * @param bitsToConsume How many bits to skip. Must not be more than
+     *                      the number of bits actually left in the stream
+     *                      after the last peekBits().
+     * @see #peekBits(int)
+     */
+    public void consumeBits(int bitsToConsume) {
+        if (bitsToConsume > bufferedBits) {
+            throw new IllegalStateException("consuming bits past the end of the stream");
+        }
+        bufferedBits -= bitsToConsume;
+    }
+
+    /**
+     * Check how many bits are left in the stream.
+     * @param atMost The largest number of interest. Can be between 0..32.
+     * @return The number of bits left in the stream, or atMost if there are
+     *         more than that.
+     * @throws IOException
+     */
+    public int bitsRemaining(int atMost) throws IOException {
+        if (bufferedBits < atMost) {
+            fill(atMost);
+        }
+        return (bufferedBits < atMost)? bufferedBits : atMost;
+    }
+
+    /**
+     * @return True if there are no bits left in the stream.
+     * @throws IOException
+     */
+    public boolean isEOF() throws IOException {
+        return bitsRemaining(1) == 0;
+    }
+
+    /**
+     * Skip the remaining bits of a partially read byte, so that the next
+     * read starts at a byte boundary of the underlying stream.
+     */
+    public void skipToByteBoundary() {
+        bufferedBits -= bufferedBits % 8;
+    }
+
+    /**
+     * Read bytes. If the stream is at a byte boundary the bytes are copied
+     * in bulk from the buffers, or read directly from the underlying stream
+     * when the buffers are empty.
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (bufferedBits % 8 != 0) {
+            return super.read(b, off, len);
+        }
+        int n = 0;
+        while (bufferedBits > 0 && n < len) {
+            bufferedBits -= 8;
+            b[off + n++] = (byte)(buffer >>> bufferedBits);
+        }
+        int copied = Math.min(len - n, limit - position);
+        System.arraycopy(bytes, position, b, off + n, copied);
+        position += copied;
+        n += copied;
+        if (n == 0 && !ended) {
+            n = ins.read(b, off, len);
+            if (n == -1) {
+                ended = true;
+            }
+        }
+        return (n == 0)? -1 : n;
+    }
+
     @Override
     public int read() throws IOException {
-        Integer result = readBits(8);
-        return (result == null)? -1 : result;
+        if (bitsRemaining(8) < 8) {
+            bufferedBits = 0;
+            return -1;
+        }
+        return readBitsInt(8);
     }
 }
@@ -2,23 +2,45 @@ package tl15.utils;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 /**
  * A bit output stream.
+ *
+ * The bits are collected into a 64-bit accumulator, and each full word is
+ * stored into a byte buffer with one write. The buffer is written to the
+ * underlying stream when it is full or the stream is flushed, so writing a
+ * code costs a few shifts and the underlying stream sees only big writes.
  */
 public class BitOutputStream extends OutputStream {
+    /** The size of the byte buffer. */
+    private static final int bufferSize = 1 << 14;
+
     private final OutputStream outs;
 
-    private byte curByte = 0;
-    private int bytePos = 0;
+    private final byte[] buffer = new byte[bufferSize];
+    private final ByteBuffer view = ByteBuffer.wrap(buffer);
+    private int position = 0;
+
+    /**
+     * Bits not yet stored in the buffer. The last accumulatedBits bits are
+     * valid, and the first of them was written first; the other bits may
+     * contain anything.
+     */
+    private long accumulator = 0;
+
+    /**
+     * The number of valid bits in accumulator, 0..63.
+     */
+    private int accumulatedBits = 0;
 
     /**
      * Keeps track of how many bits have been written to the stream (or buffer).
      */
-    private int bitCount = 0;
+    private long bitCount = 0;
 
     /**
-     * 
+     *
      * @param outs The stream to convert into a bit stream.
      */
     public BitOutputStream(OutputStream outs) {
@@ -32,19 +54,42 @@ public class BitOutputStream extends OutputStream {
      * @throws java.io.IOException
      */
     public void writeBits(int bitsToWrite, int theBits) throws IOException {
+        writeBits(bitsToWrite, (long)theBits);
+    }
+
+    /**
+     * Write bits to the stream.
+     * @param bitsToWrite How many bits to write. Can be between 0..64.
+     * @param theBits The bits to write are the last 'bitsToWrite' bits of <code>theBits</code>.
+     * @throws java.io.IOException
+     */
+    public void writeBits(int bitsToWrite, long theBits) throws IOException {
+        if (bitsToWrite == 0) {
+            return;
+        }
         bitCount += bitsToWrite;
-        while (bitsToWrite > 0) {
-            if (bytePos == 8) {
-                outs.write(curByte);
-                curByte = 0;
-                bytePos = 0;
-            }
-            if ((theBits & (1 << (bitsToWrite - 1))) != 0) {
-                curByte |= (0x80 >> bytePos);
-            }
-            ++bytePos;
-            --bitsToWrite;
+        theBits &= -1L >>> (64 - bitsToWrite);
+        int free = 64 - accumulatedBits;
+        if (bitsToWrite < free) {
+            accumulator = (accumulator << bitsToWrite) | theBits;
+            accumulatedBits += bitsToWrite;
+            return;
+        }
+
+        // fill the accumulator up to a word and store it; the bits which do
+        // not fit stay in the accumulator
+        int rest = bitsToWrite - free;
+        long word = theBits >>> rest;
+        if (accumulatedBits > 0) {
+            word |= accumulator << free;
+        }
+        if (position > bufferSize - 8) {
+            drain();
         }
+        view.putLong(position, word);
+        position += 8;
+        accumulator = theBits;
+        accumulatedBits = rest;
     }
 
     /**
@@ -58,6 +103,33 @@ public class BitOutputStream extends OutputStream {
         }
     }
 
+    /**
+     * Write the buffer to the underlying stream.
+     * @throws IOException
+     */
+    private void drain() throws IOException {
+        outs.write(buffer, 0, position);
+        position = 0;
+    }
+
+    /**
+     * Move the whole bytes of the accumulator into the buffer. If the
+     * number of accumulated bits is not a multiple of 8, the rest of the
+     * last byte is filled with zero bits, which is not counted in the bit
+     * count.
+     * @throws IOException
+     */
+    private void storeAccumulator() throws IOException {
+        if (position + 8 > bufferSize) {
+            drain();
+        }
+        while (accumulatedBits > 0) {
+            int shift = accumulatedBits - 8;
+            buffer[position++] = (byte)((shift >= 0)? accumulator >>> shift : accumulator << -shift);
+            accumulatedBits = (shift > 0)? shift : 0;
+        }
+    }
+
     /**
      * Write the remaining buffer to the stream. If there are 8p+n, where n=1..7,
      * bits remaining, then the last 8-n bits written are zeroes. Also flushes
@@ -66,22 +138,63 @@ public class BitOutputStream extends OutputStream {
      */
     @Override
     public void flush() throws IOException {
-        if (bytePos > 0) {
-            outs.write(curByte);
-        }
-        bytePos = 0;
-        curByte = 0;
+        storeAccumulator();
+        drain();
         outs.flush();
     }
 
     /**
-     * 
+     * Flush this stream and close the underlying stream.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        outs.close();
+    }
+
+    /**
+     *
      * @return The number of bits written to the stream. Might not be a multiple of 8.
      */
-    public int getBitCount() {
+    public long getBitCount() {
         return bitCount;
     }
 
+    /**
+     * Write zero bits until the stream is at a byte boundary.
+     * @throws IOException
+     */
+    public void padToByteBoundary() throws IOException {
+        if (accumulatedBits % 8 != 0) {
+            writeBits(8 - accumulatedBits % 8, 0);
+        }
+    }
+
+    /**
+     * Write bytes. If the stream is at a byte boundary the bytes are copied
+     * to the buffer in bulk, or written directly to the underlying stream if
+     * there are many of them.
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (accumulatedBits % 8 != 0) {
+            super.write(b, off, len);
+            return;
+        }
+        storeAccumulator();
+        if (position + len > bufferSize) {
+            drain();
+        }
+        if (len >= bufferSize) {
+            outs.write(b, off, len);
+        } else {
+            System.arraycopy(b, off, buffer, position, len);
+            position += len;
+        }
+        bitCount += 8L * len;
+    }
+
     @Override
     public void write(int i) throws IOException {
         writeBits(8, i);
@@ -0,0 +1,186 @@
+package tl15.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A fixed-size array of numbers which is stored outside the Java heap, in
+ * direct byte buffers, when it is large. Big tables kept there neither count
+ * against the heap size nor have to be copied by the garbage collector, and
+ * a byte buffer holds up to 2 GB, so an array can be split into several
+ * buffers and have more elements than a Java array.
+ *
+ * Accessing a byte buffer costs a few checks more than accessing a Java
+ * array, which shows for small arrays which fit in the cache. Arrays of at
+ * most heapLimit bytes are therefore kept in a Java array as usual.
+ *
+ * The elements of an array are all of the same type, given as their size in
+ * bytes when the array is created, and must be accessed with the methods of
+ * that type. All elements are 0 initially.
+ */
+public class LargeArray {
+    /** The size of the biggest array kept on the heap, in bytes. */
+    private static final long heapLimit = 1 << 20;
+
+    /** The size of each buffer is 2^segmentBits bytes, except the last one. */
+    private static final int segmentBits = 30;
+    private static final long segmentMask = (1L << segmentBits) - 1;
+
+    private final long length;
+    private final int elementSize;
+
+    /** The Java array of the elements, or null if they are off the heap. */
+    private final long[] heapLongs;
+    private final int[] heapInts;
+    private final byte[] heapBytes;
+
+    /** The buffers holding the elements off the heap, or null. */
+    private final ByteBuffer[] segments;
+
+    /**
+     * @param length The number of elements.
+     * @param elementSize The size of an element in bytes: 1, 4 or 8.
+     */
+    public LargeArray(long length, int elementSize) {
+        if (length < 0 || (elementSize != 1 && elementSize != 4 && elementSize != 8)) {
+            throw new IllegalArgumentException("Bad array: " + length + " elements of " + elementSize + " bytes");
+        }
+        this.length = length;
+        this.elementSize = elementSize;
+        long bytes = length * elementSize;
+        boolean onHeap = (bytes <= heapLimit);
+        heapLongs = (onHeap && elementSize == 8)? new long[(int)length] : null;
+        heapInts = (onHeap && elementSize == 4)? new int[(int)length] : null;
+        heapBytes = (onHeap && elementSize == 1)? new byte[(int)length] : null;
+        if (onHeap) {
+            segments = null;
+        } else {
+            segments = new ByteBuffer[(int)((bytes + segmentMask) >>> segmentBits)];
+            for (int s = 0; s < segments.length; ++s) {
+                int size = (int)Math.min(bytes - ((long)s << segmentBits), 1L << segmentBits);
+                segments[s] = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+            }
+        }
+    }
+
+    /**
+     * @return The number of elements.
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Create a copy of the array with a different length.
+     * @param newLength The number of elements in the copy. Elements past the
+     *                  end of this array are 0.
+     * @return The copy.
+     */
+    public LargeArray copyOf(long newLength) {
+        LargeArray copy = new LargeArray(newLength, elementSize);
+        long count = Math.min(length, newLength);
+        if (segments != null && copy.segments != null) {
+            long bytes = count * elementSize;
+            for (int s = 0; ((long)s << segmentBits) < bytes; ++s) {
+                ByteBuffer from = segments[s].duplicate();
+                from.limit((int)Math.min(bytes - ((long)s << segmentBits), from.capacity()));
+                copy.segments[s].duplicate().put(from);
+            }
+        } else if (segments == null && copy.segments == null) {
+            System.arraycopy(heapArray(), 0, copy.heapArray(), 0, (int)count);
+        } else if (elementSize == 8) {
+            for (long i = 0; i < count; ++i) {
+                copy.putLong(i, getLong(i));
+            }
+        } else if (elementSize == 4) {
+            for (long i = 0; i < count; ++i) {
+                copy.putInt(i, getInt(i));
+            }
+        } else {
+            for (long i = 0; i < count; ++i) {
+                copy.putByte(i, getByte(i));
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * @return The Java array of the elements, or null if they are off the heap.
+     */
+    private Object heapArray() {
+        return (heapLongs != null)? heapLongs : (heapInts != null)? heapInts : heapBytes;
+    }
+
+    /**
+     * @param index The index of an element of type long.
+     * @return The element.
+     */
+    public long getLong(long index) {
+        if (heapLongs != null) {
+            return heapLongs[(int)index];
+        }
+        long offset = index << 3;
+        return segments[(int)(offset >>> segmentBits)].getLong((int)(offset & segmentMask));
+    }
+
+    /**
+     * @param index The index of an element of type long.
+     * @param value The new value of the element.
+     */
+    public void putLong(long index, long value) {
+        if (heapLongs != null) {
+            heapLongs[(int)index] = value;
+            return;
+        }
+        long offset = index << 3;
+        segments[(int)(offset >>> segmentBits)].putLong((int)(offset & segmentMask), value);
+    }
+
+    /**
+     * @param index The index of an element of type int.
+     * @return The element.
+     */
+    public int getInt(long index) {
+        if (heapInts != null) {
+            return heapInts[(int)index];
+        }
+        long offset = index << 2;
+        return segments[(int)(offset >>> segmentBits)].getInt((int)(offset & segmentMask));
+    }
+
+    /**
+     * @param index The index of an element of type int.
+     * @param value The new value of the element.
+     */
+    public void putInt(long index, int value) {
+        if (heapInts != null) {
+            heapInts[(int)index] = value;
+            return;
+        }
+        long offset = index << 2;
+        segments[(int)(offset >>> segmentBits)].putInt((int)(offset & segmentMask), value);
+    }
+
+    /**
+     * @param index The index of an element of type byte.
+     * @return The element.
+     */
+    public byte getByte(long index) {
+        if (heapBytes != null) {
+            return heapBytes[(int)index];
+        }
+        return segments[(int)(index >>> segmentBits)].get((int)(index & segmentMask));
+    }
+
+    /**
+     * @param index The index of an element of type byte.
+     * @param value The new value of the element.
+     */
+    public void putByte(long index, byte value) {
+        if (heapBytes != null) {
+            heapBytes[(int)index] = value;
+            return;
+        }
+        segments[(int)(index >>> segmentBits)].put((int)(index & segmentMask), value);
+    }
+}
@@ -0,0 +1,170 @@
+package tl15.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import static tl15.utils.Math.max;
+import static tl15.utils.Math.min;
+
+/**
+ * An input stream reading a file through memory mappings.
+ *
+ * The file is mapped into memory one window at a time, since a buffer holds
+ * at most 2 GB, and the bytes are read straight from the mapping without
+ * copying them into heap buffers or taking the lock of a BufferedInputStream
+ * on every read(). Since any part of the file can be mapped again, mark()
+ * costs nothing and has no read limit, so algorithms reading their input
+ * twice can reset() even over big files. The channel is also available to
+ * code which processes the rest of the file in bulk.
+ */
+public class MappedInputStream extends InputStream {
+    private final FileChannel channel;
+    private final long size;
+
+    /** The largest part of the file mapped into memory at a time. */
+    private final int windowSize;
+
+    /** The mapped part of the file, or null if nothing is mapped yet. */
+    private MappedByteBuffer window = null;
+
+    /** The position of the window in the file. */
+    private long windowStart = 0;
+
+    /** The position of the mark in the file. */
+    private long mark = 0;
+
+    /**
+     * @param channel The file to read, from its current position. Closing
+     *                this stream closes the channel.
+     * @throws IOException
+     */
+    public MappedInputStream(FileChannel channel) throws IOException {
+        this(channel, 1 << 30);
+    }
+
+    /**
+     * @param channel The file to read, from its current position.
+     * @param windowSize The largest part of the file to map at a time.
+     * @throws IOException
+     */
+    MappedInputStream(FileChannel channel, int windowSize) throws IOException {
+        this.channel = channel;
+        this.windowSize = windowSize;
+        size = channel.size();
+        windowStart = channel.position();
+        mark = windowStart;
+    }
+
+    /**
+     * @return The channel of the file.
+     */
+    public FileChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * @return The position of the next byte to read in the file.
+     */
+    public long position() {
+        return (window != null)? windowStart + window.position() : windowStart;
+    }
+
+    /**
+     * Move to a position in the file.
+     * @param position The new position. Must be between 0 and the size of the file.
+     * @throws IOException
+     */
+    public void seek(long position) throws IOException {
+        if (position < 0 || position > size) {
+            throw new IllegalArgumentException("Bad position: " + position);
+        }
+        if (window != null && position >= windowStart && position <= windowStart + window.limit()) {
+            window.position((int)(position - windowStart));
+        } else {
+            window = null;
+            windowStart = position;
+        }
+    }
+
+    /**
+     * Make sure there are bytes left in the window, mapping the next part of
+     * the file if needed.
+     * @return False if the end of the file has been reached.
+     * @throws IOException
+     */
+    private boolean ensureMapped() throws IOException {
+        if (window != null && window.hasRemaining()) {
+            return true;
+        }
+        long start = position();
+        if (start >= size) {
+            return false;
+        }
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, min(windowSize, size - start));
+        windowStart = start;
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureMapped()) {
+            return -1;
+        }
+        return window.get() & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureMapped()) {
+            return -1;
+        }
+        int n = min(len, window.remaining());
+        window.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = min(max(n, 0), size - position());
+        seek(position() + skipped);
+        return skipped;
+    }
+
+    /**
+     * @return The number of bytes left in the file, or Integer.MAX_VALUE if
+     *         there are more.
+     */
+    @Override
+    public int available() {
+        return (int)min(size - position(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    /**
+     * Mark the current position.
+     * @param readlimit Ignored: any amount can be read before reset().
+     */
+    @Override
+    public void mark(int readlimit) {
+        mark = position();
+    }
+
+    @Override
+    public void reset() throws IOException {
+        seek(mark);
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
@@ -28,6 +28,16 @@ public class Math {
         return (a > b)? a : b;
     }
 
+    /**
+     * Return the larger of the given values.
+     * @param a
+     * @param b
+     * @return 
+     */
+    public static long max(long a, long b) {
+        return (a > b)? a : b;
+    }
+
     /**
      * Return the smaller of the given values.
      * @param a
@@ -37,4 +47,14 @@ public class Math {
     public static int min(int a, int b) {
         return (a < b)? a : b;
     }
+
+    /**
+     * Return the smaller of the given values.
+     * @param a
+     * @param b
+     * @return 
+     */
+    public static long min(long a, long b) {
+        return (a < b)? a : b;
+    }
 }
@@ -0,0 +1,49 @@
+package tl15.huffman;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import static tl15.utils.DataSources.consecutiveData;
+import static tl15.utils.DataSources.randomData;
+import static tl15.utils.DataSources.weighedExponentialRandomData;
+import static tl15.utils.DataSources.weighedLinearRandomData;
+
+public class AdaptiveHuffmanTest {
+    private static final int bigSize = 100000;
+
+    private static byte[] testCompressDecompress(byte[] data) throws IOException {
+        ByteArrayOutputStream outs = new ByteArrayOutputStream();
+        AdaptiveHuffman.compressFile(new ByteArrayInputStream(data), outs);
+        byte[] compressed = outs.toByteArray();
+        outs = new ByteArrayOutputStream();
+        AdaptiveHuffman.decompressFile(new ByteArrayInputStream(compressed), outs);
+        assertArrayEquals(data, outs.toByteArray());
+        return compressed;
+    }
+
+    @Test
+    public void testCompressAndDecompress() throws IOException {
+        testCompressDecompress(new byte[0]);
+        testCompressDecompress(new byte[]{1});
+        testCompressDecompress(new byte[]{1, 1, 1});
+        testCompressDecompress(randomData(bigSize, false));
+        testCompressDecompress(randomData(bigSize, true));
+        testCompressDecompress(consecutiveData(bigSize));
+        testCompressDecompress(weighedLinearRandomData(bigSize));
+        byte[] compressed = testCompressDecompress(weighedExponentialRandomData(bigSize));
+        // the data has only a few bits of entropy per byte
+        assertTrue(compressed.length < bigSize / 3);
+    }
+
+    @Test
+    public void testChangingStatistics() throws IOException {
+        byte[] data = new byte[bigSize];
+        byte[] first = weighedExponentialRandomData(bigSize / 2);
+        byte[] second = randomData(bigSize / 2, true);
+        System.arraycopy(first, 0, data, 0, bigSize / 2);
+        System.arraycopy(second, 0, data, bigSize / 2, bigSize / 2);
+        testCompressDecompress(data);
+    }
+}
@@ -0,0 +1,46 @@
+package tl15.huffman;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import static tl15.utils.DataSources.alternatingData;
+import static tl15.utils.DataSources.randomData;
+import static tl15.utils.DataSources.weighedExponentialRandomData;
+
+public class ContextHuffmanTest {
+    private static byte[] testCompressDecompress(byte[] data) throws IOException {
+        ByteArrayOutputStream outs = new ByteArrayOutputStream();
+        ContextHuffman.compressFile(new ByteArrayInputStream(data), outs);
+        byte[] compressed = outs.toByteArray();
+        outs = new ByteArrayOutputStream();
+        ContextHuffman.decompressFile(new ByteArrayInputStream(compressed), outs);
+        assertArrayEquals(data, outs.toByteArray());
+        return compressed;
+    }
+
+    @Test
+    public void testCompressAndDecompress() throws IOException {
+        testCompressDecompress(new byte[0]);
+        testCompressDecompress(new byte[]{3});
+        testCompressDecompress(new byte[]{3, 3, 3, 4});
+        testCompressDecompress(randomData(100000, false));
+        testCompressDecompress(weighedExponentialRandomData(100000));
+        // every byte is determined by the previous one
+        byte[] compressed = testCompressDecompress(alternatingData(100000));
+        assertTrue(compressed.length < 100000 / 8 + 100);
+    }
+
+    @Test
+    public void testBetterThanOrderZeroOnText() throws IOException {
+        byte[] text = Files.readAllBytes(Paths.get("test/pg48138.txt"));
+        byte[] compressed = testCompressDecompress(text);
+
+        ByteArrayOutputStream outs = new ByteArrayOutputStream();
+        Huffman.compressFile(new ByteArrayInputStream(text), outs);
+        assertTrue(compressed.length < outs.size());
+    }
+}
@@ -0,0 +1,59 @@
+package tl15.huffman;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import static tl15.utils.DataSources.randomData;
+import static tl15.utils.DataSources.weighedExponentialRandomData;
+
+public class HistogramTest {
+    private static int[] naiveCount(byte[] data, int offset, int length) {
+        int[] counts = new int[256];
+        for (int i = offset; i < offset + length; ++i) {
+            ++counts[data[i] & 0xff];
+        }
+        return counts;
+    }
+
+    @Test
+    public void testCount() {
+        byte[] data = randomData(1001, false);
+        assertArrayEquals(naiveCount(data, 0, 0), Histogram.count(data, 0, 0));
+        assertArrayEquals(naiveCount(data, 0, 3), Histogram.count(data, 0, 3));
+        assertArrayEquals(naiveCount(data, 5, 996), Histogram.count(data, 5, 996));
+        assertArrayEquals(naiveCount(data, 0, 1001), Histogram.count(ByteBuffer.wrap(data)));
+        ByteBuffer buffer = ByteBuffer.wrap(data, 7, 100);
+        assertArrayEquals(naiveCount(data, 7, 100), Histogram.count(buffer));
+        assertEquals(7, buffer.position());
+    }
+
+    @Test
+    public void testCountParallel() {
+        byte[] data = weighedExponentialRandomData(5000000);
+        int[] expected = naiveCount(data, 0, data.length);
+        assertArrayEquals(expected, Histogram.countParallel(data, 0, data.length));
+        assertArrayEquals(expected, Histogram.countParallel(ByteBuffer.wrap(data)));
+        assertArrayEquals(naiveCount(data, 3, 4000000), Histogram.countParallel(data, 3, 4000000));
+    }
+
+    @Test
+    public void testCountFile() throws IOException {
+        byte[] data = randomData(3000000, false);
+        File file = File.createTempFile("histogram", null);
+        file.deleteOnExit();
+        try (FileOutputStream outs = new FileOutputStream(file)) {
+            outs.write(data);
+        }
+        try (RandomAccessFile ins = new RandomAccessFile(file, "r")) {
+            int[] expected = naiveCount(data, 0, data.length);
+            long[] counts = Histogram.count(ins.getChannel());
+            for (int c = 0; c < 256; ++c) {
+                assertEquals(expected[c], counts[c]);
+            }
+        }
+    }
+}
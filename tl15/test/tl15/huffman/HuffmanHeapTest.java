@@ -2,6 +2,7 @@ package tl15.huffman;
 
 import tl15.huffman.HuffmanHeap;
 import tl15.huffman.HuffmanTreeNode;
+import java.util.Random;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -35,4 +36,22 @@ public class HuffmanHeapTest {
             assertEquals(i, q.pop().sum);
         }
     }
+
+    @Test
+    public void testRandomOrder() {
+        Random r = new Random(42);
+        for (int round = 0; round < 100; ++round) {
+            int n = 1 + r.nextInt(50);
+            HuffmanHeap q = new HuffmanHeap(n);
+            for (int i = 0; i < n; ++i) {
+                q.push(new HuffmanTreeNode(r.nextInt(100), null, null, 0));
+            }
+            int previous = -1;
+            for (int i = 0; i < n; ++i) {
+                int sum = q.pop().sum;
+                assertTrue(previous <= sum);
+                previous = sum;
+            }
+        }
+    }
 }
@@ -3,12 +3,22 @@ package tl15.huffman;
 import tl15.utils.BitInputStream;
 import tl15.utils.BitOutputStream;
 import tl15.utils.List;
+import tl15.utils.MappedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import static org.junit.Assert.*;
 import org.junit.Test;
 import static tl15.utils.DataSources.randomData;
@@ -154,6 +164,34 @@ public class HuffmanTest {
         checkCodes(freqs, tree);
     }
 
+    private static void checkCodeTable(int[] freqs) throws NoSuchMethodException, IllegalAccessException, IllegalArgumentException, InvocationTargetException {
+        Method buildTree = Huffman.class.getDeclaredMethod("buildTree", int[].class);
+        buildTree.setAccessible(true);
+        Method findCode = Huffman.class.getDeclaredMethod("findCode", HuffmanTreeNode.class);
+        findCode.setAccessible(true);
+        HuffmanTree tree = (HuffmanTree)buildTree.invoke(null, (Object)freqs);
+        HuffmanCodeTable table = new HuffmanCodeTable(tree);
+        for (int i = 0; i < 256; ++i) {
+            if (freqs[i] == 0) {
+                assertEquals(0, table.lengths[i]);
+                continue;
+            }
+            List<Boolean> code = (List<Boolean>)findCode.invoke(null, tree.leaves[i]);
+            assertEquals(code.size(), table.lengths[i]);
+            for (int j = 0; j < code.size(); ++j) {
+                boolean bit = ((table.codes[i] >>> (table.lengths[i] - 1 - j)) & 1) != 0;
+                assertEquals(code.get(j), bit);
+            }
+        }
+    }
+
+    @Test
+    public void testCodeTable() throws Exception {
+        checkCodeTable(new int[256]);
+        checkCodeTable(helloFreqs());
+        checkCodeTable(calculateFrequencies(new ByteArrayInputStream(weighedExponentialRandomData(bigSize))));
+    }
+
     private void testCompressDecompress(byte[] data, int[] freqs) throws IOException {
         ByteArrayOutputStream outs = new ByteArrayOutputStream();
         BitOutputStream bouts = new BitOutputStream(outs);
@@ -174,6 +212,21 @@ public class HuffmanTest {
         return freqs;
     }
 
+    @Test
+    public void testFrequenciesOfGzipStream() throws IOException {
+        // available() returns 1 until the end of a GZIPInputStream
+        byte[] data = weighedExponentialRandomData(bigSize);
+        ByteArrayOutputStream outs = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(outs)) {
+            gzip.write(data);
+        }
+        int[] expected = calculateFrequencies(new ByteArrayInputStream(data));
+        long[] freqs = Huffman.calculateFrequencies(new GZIPInputStream(new ByteArrayInputStream(outs.toByteArray())));
+        for (int b = 0; b < 256; ++b) {
+            assertEquals(expected[b], freqs[b]);
+        }
+    }
+
     @Test
     public void testCompressAndDecompress() throws IOException {
         int[] freqs = new int[256];
@@ -200,14 +253,266 @@ public class HuffmanTest {
         testCompressDecompress(data, freqs);
     }
 
+    private static byte[] compressDecompressFile(byte[] data) throws IOException {
+        ByteArrayOutputStream outs = new ByteArrayOutputStream();
+        Huffman.compressFile(new ByteArrayInputStream(data), outs);
+        byte[] compressed = outs.toByteArray();
+        outs = new ByteArrayOutputStream();
+        Huffman.decompressFile(new ByteArrayInputStream(compressed), outs);
+        assertArrayEquals(data, outs.toByteArray());
+        return compressed;
+    }
+
     @Test
     public void testCompressAndDecompressFile() throws Exception {
-        InputStream ins = new ByteArrayInputStream(helloData);
+        compressDecompressFile(helloData);
+        compressDecompressFile(new byte[0]);
+        compressDecompressFile(new byte[]{7});
+        compressDecompressFile(new byte[]{7, 7, 7});
+        compressDecompressFile(randomData(bigSize, false));
+        compressDecompressFile(weighedExponentialRandomData(bigSize));
+    }
+
+    @Test
+    public void testDecompressVersion1File() throws Exception {
+        // the first 4096 bytes of the text compressed by the first version,
+        // with a frequency header
+        byte[] compressed = Files.readAllBytes(Paths.get("test/pg48138-4k-v1.hc"));
+        byte[] expected = Arrays.copyOf(Files.readAllBytes(Paths.get("test/pg48138.txt")), 4096);
+        ByteArrayOutputStream outs = new ByteArrayOutputStream();
+        Huffman.decompressFile(new ByteArrayInputStream(compressed), outs);
+        assertArrayEquals(expected, outs.toByteArray());
+    }
+
+    @Test
+    public void testCompressMappedFile() throws Exception {
+        // the frequencies are counted from the mapped file, and the rest of
+        // the output must be the same as from a stream
+        byte[] data = weighedLinearRandomData(bigSize);
+        File file = File.createTempFile("huffman", null);
+        file.deleteOnExit();
+        try (FileOutputStream outs = new FileOutputStream(file)) {
+            outs.write(data);
+        }
+        ByteArrayOutputStream outs = new ByteArrayOutputStream();
+        try (MappedInputStream ins = new MappedInputStream(new RandomAccessFile(file, "r").getChannel())) {
+            Huffman.compressFile(ins, outs);
+        }
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        Huffman.compressFile(new ByteArrayInputStream(data), expected);
+        assertArrayEquals(expected.toByteArray(), outs.toByteArray());
+    }
+
+    @Test
+    public void testSmallHeader() throws Exception {
+        // magic + size + about 16 bytes of code lengths + 5 bytes of data
+        assertTrue(compressDecompressFile(helloData).length < 40);
+    }
+
+    @Test
+    public void testCanonicalCodes() throws Exception {
+        HuffmanCodeTable table = HuffmanCodeTable.canonical(new int[]{2, 0, 1, 3, 3});
+        assertArrayEquals(new long[]{0b10, 0, 0b0, 0b110, 0b111}, table.codes);
+
         ByteArrayOutputStream outs = new ByteArrayOutputStream();
-        Huffman.compressFile(ins, outs);
-        ins = new ByteArrayInputStream(outs.toByteArray());
+        BitOutputStream bouts = new BitOutputStream(outs);
+        table.writeLengths(bouts);
+        bouts.flush();
+        BitInputStream bins = new BitInputStream(new ByteArrayInputStream(outs.toByteArray()));
+        HuffmanCodeTable read = HuffmanCodeTable.readCanonical(bins, 5);
+        assertArrayEquals(table.lengths, read.lengths);
+        assertArrayEquals(table.codes, read.codes);
+    }
+
+    private static void checkLimitedLengths(int[] freqs, int maxLength) {
+        int[] lengths = PackageMerge.lengths(freqs, maxLength);
+        double kraft = 0;
+        long cost = 0;
+        for (int i = 0; i < freqs.length; ++i) {
+            if (freqs[i] == 0) {
+                assertEquals(0, lengths[i]);
+                continue;
+            }
+            assertTrue(lengths[i] >= 1);
+            assertTrue(lengths[i] <= maxLength);
+            kraft += java.lang.Math.pow(2, -lengths[i]);
+            cost += (long)freqs[i] * lengths[i];
+        }
+        assertEquals(1.0, kraft, 1e-9);
+
+        // no limit can beat unlimited Huffman codes
+        long huffmanCost = 0;
+        int[] huffmanLengths = PackageMerge.lengths(freqs, 64);
+        for (int i = 0; i < freqs.length; ++i) {
+            huffmanCost += (long)freqs[i] * huffmanLengths[i];
+        }
+        assertTrue(cost >= huffmanCost);
+    }
+
+    @Test
+    public void testPackageMerge() throws Exception {
+        assertArrayEquals(new int[]{1, 0, 2, 2}, PackageMerge.lengths(new int[]{10, 0, 1, 1}, 2));
+        assertArrayEquals(new int[]{2, 2, 2, 2}, PackageMerge.lengths(new int[]{8, 4, 2, 1}, 2));
+        assertArrayEquals(new int[]{1, 2, 3, 3}, PackageMerge.lengths(new int[]{8, 4, 2, 1}, 3));
+        assertArrayEquals(new int[]{0, 1, 0}, PackageMerge.lengths(new int[]{0, 5, 0}, 8));
+
+        int[] freqs = calculateFrequencies(new ByteArrayInputStream(weighedExponentialRandomData(bigSize)));
+        checkLimitedLengths(freqs, 11);
+        checkLimitedLengths(freqs, 12);
+        checkLimitedLengths(freqs, 15);
+        checkLimitedLengths(helloFreqs(), 4);
+
+        // without an effective limit package-merge gives Huffman codes
+        Method buildTree = Huffman.class.getDeclaredMethod("buildTree", int[].class);
+        buildTree.setAccessible(true);
+        int[] treeLengths = new HuffmanCodeTable((HuffmanTree)buildTree.invoke(null, (Object)freqs)).lengths;
+        int[] mergeLengths = PackageMerge.lengths(freqs, 64);
+        long treeCost = 0, mergeCost = 0;
+        for (int i = 0; i < 256; ++i) {
+            treeCost += (long)freqs[i] * treeLengths[i];
+            mergeCost += (long)freqs[i] * mergeLengths[i];
+        }
+        assertEquals(treeCost, mergeCost);
+    }
+
+    @Test
+    public void testCodeLengths() throws Exception {
+        assertArrayEquals(new int[]{0, 0, 0}, Huffman.codeLengths(new int[3]));
+        assertArrayEquals(new int[]{0, 1, 0}, Huffman.codeLengths(new int[]{0, 5, 0}));
+        assertArrayEquals(new int[]{1, 2, 3, 3}, Huffman.codeLengths(new int[]{8, 4, 2, 1}));
+
+        // an alphabet bigger than the bytes gives the same cost as the tree
+        Random random = new Random(42);
+        int[] freqs = new int[5000];
+        for (int i = 0; i < freqs.length; ++i) {
+            freqs[i] = (i % 7 == 0)? 0 : 1 + random.nextInt(1 + i);
+        }
+        Method buildTree = Huffman.class.getDeclaredMethod("buildTree", int[].class);
+        buildTree.setAccessible(true);
+        int[] treeLengths = new HuffmanCodeTable((HuffmanTree)buildTree.invoke(null, (Object)freqs)).lengths;
+        int[] lengths = Huffman.codeLengths(freqs);
+        long treeCost = 0, cost = 0;
+        double kraft = 0;
+        for (int i = 0; i < freqs.length; ++i) {
+            treeCost += (long)freqs[i] * treeLengths[i];
+            cost += (long)freqs[i] * lengths[i];
+            assertEquals(freqs[i] == 0, lengths[i] == 0);
+            kraft += (lengths[i] > 0)? java.lang.Math.pow(2, -lengths[i]) : 0;
+        }
+        assertEquals(treeCost, cost);
+        assertEquals(1.0, kraft, 1e-9);
+
+        // the decoding table handles the big alphabet
+        HuffmanCodeTable table = HuffmanCodeTable.canonical(lengths);
+        ByteArrayOutputStream outs = new ByteArrayOutputStream();
+        BitOutputStream bouts = new BitOutputStream(outs);
+        for (int i = 0; i < freqs.length; ++i) {
+            bouts.writeBits(lengths[i], table.codes[i]);
+        }
+        bouts.flush();
+        HuffmanDecodeTable decodeTable = new HuffmanDecodeTable(table);
+        BitInputStream bins = new BitInputStream(new ByteArrayInputStream(outs.toByteArray()));
+        for (int i = 0; i < freqs.length; ++i) {
+            if (lengths[i] > 0) {
+                assertEquals(i, decodeTable.decode(bins));
+            }
+        }
+    }
+
+    @Test
+    public void testScaleFrequencies() {
+        assertArrayEquals(new int[]{5, 0, 7}, Huffman.scaleFrequencies(new long[]{5, 0, 7}));
+
+        // counts of an input over 8 GB, where single counts exceed an int
+        long[] counts = new long[256];
+        counts[0] = 3L << 31;
+        counts[1] = 1L << 31;
+        counts[2] = 1;
+        counts[3] = 1000;
+        assertEquals((1L << 33) + 1001, Huffman.sizeFromFreqs(counts));
+        int[] freqs = Huffman.scaleFrequencies(counts);
+        long sum = 0;
+        for (int f : freqs) {
+            sum += f;
+        }
+        assertTrue(sum <= Integer.MAX_VALUE);
+        assertEquals(3 * freqs[1], freqs[0]);
+        assertEquals(1, freqs[2]);
+        assertEquals(111, freqs[3]);
+        assertEquals(0, freqs[4]);
+        assertArrayEquals(new int[]{1, 2, 3, 3}, Arrays.copyOf(Huffman.canonicalCodes(freqs, 0).lengths, 4));
+    }
+
+    @Test
+    public void testLengthLimitedFile() throws Exception {
+        byte[] data = weighedExponentialRandomData(bigSize);
+        ByteArrayOutputStream outs = new ByteArrayOutputStream();
+        Huffman.compressFile(new ByteArrayInputStream(data), outs, 11);
+        ByteArrayInputStream ins = new ByteArrayInputStream(outs.toByteArray());
+        outs = new ByteArrayOutputStream();
+        Huffman.decompressFile(ins, outs);
+        assertArrayEquals(data, outs.toByteArray());
+    }
+
+    private static void testBlocks(byte[] data, int blockSize) throws IOException {
+        testBlocks(data, blockSize, false);
+        testBlocks(data, blockSize, true);
+    }
+
+    private static void testBlocks(byte[] data, int blockSize, boolean interleaved) throws IOException {
+        ByteArrayOutputStream outs = new ByteArrayOutputStream();
+        Huffman.compressBlocks(new ByteArrayInputStream(data), outs, blockSize, 15, interleaved);
+        ByteArrayInputStream ins = new ByteArrayInputStream(outs.toByteArray());
         outs = new ByteArrayOutputStream();
         Huffman.decompressFile(ins, outs);
-        assertArrayEquals(helloData, outs.toByteArray());
+        assertArrayEquals(data, outs.toByteArray());
+    }
+
+    @Test
+    public void testCompressAndDecompressBlocks() throws IOException {
+        testBlocks(new byte[0], 16);
+        testBlocks(new byte[]{5}, 16);
+        testBlocks(helloData, 1);
+        testBlocks(helloData, 5);
+        testBlocks(helloData, 12);
+        testBlocks(weighedExponentialRandomData(bigSize), 1000);
+        testBlocks(weighedExponentialRandomData(bigSize), 3333);
+
+        byte[] mixed = new byte[2 * bigSize];
+        System.arraycopy(weighedExponentialRandomData(bigSize), 0, mixed, 0, bigSize);
+        System.arraycopy(randomData(bigSize, false), 0, mixed, bigSize, bigSize);
+        testBlocks(mixed, 4096);
+    }
+
+    @Test
+    public void testInterleavedStreamSizes() throws IOException {
+        // one block whose size is not a multiple of the number of streams
+        byte[] data = weighedExponentialRandomData(bigSize + 3);
+        ByteArrayOutputStream outs = new ByteArrayOutputStream();
+        Huffman.compressBlocks(new ByteArrayInputStream(data), outs, data.length, 15, true);
+
+        BitInputStream bins = new BitInputStream(new ByteArrayInputStream(outs.toByteArray()));
+        bins.readBitsInt(32);
+        assertEquals(data.length, bins.readBitsInt(32));
+        int[] lengths = HuffmanCodeTable.readCanonical(bins, 256).lengths;
+        long[] streamBits = new long[4];
+        for (int i = 0; i < data.length; ++i) {
+            streamBits[i % 4] += lengths[data[i] & 0xff];
+        }
+        // the size of each stream is that of its codes, and the streams fill
+        // the block up to the end marker
+        int[] streamSizes = new int[4];
+        for (int s = 0; s < 4; ++s) {
+            streamSizes[s] = bins.readBitsInt(32);
+            assertEquals((streamBits[s] + 7) / 8, streamSizes[s]);
+        }
+        bins.skipToByteBoundary();
+        for (int s = 0; s < 4; ++s) {
+            for (int i = 0; i < streamSizes[s]; ++i) {
+                bins.readBitsInt(8);
+            }
+        }
+        assertEquals(0, bins.readBitsInt(32));
+        assertTrue(bins.isEOF());
     }
 }
@@ -0,0 +1,98 @@
+package tl15.huffman;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import tl15.utils.BitInputStream;
+import tl15.utils.BitOutputStream;
+import tl15.utils.List;
+import static tl15.utils.DataSources.randomData;
+import static tl15.utils.DataSources.weighedExponentialRandomData;
+
+public class StaticHuffmanTableTest {
+    private static StaticHuffmanTable trained() throws IOException {
+        return StaticHuffmanTable.train(new ByteArrayInputStream(weighedExponentialRandomData(100000)));
+    }
+
+    private static byte[] testMessage(StaticHuffmanTable table, byte[] message) throws IOException {
+        ByteArrayOutputStream outs = new ByteArrayOutputStream();
+        BitOutputStream bouts = new BitOutputStream(outs);
+        table.compress(new ByteArrayInputStream(message), bouts);
+        bouts.flush();
+        byte[] compressed = outs.toByteArray();
+        outs = new ByteArrayOutputStream();
+        table.decompress(new BitInputStream(new ByteArrayInputStream(compressed)), outs);
+        assertArrayEquals(message, outs.toByteArray());
+        return compressed;
+    }
+
+    @Test
+    public void testMessages() throws IOException {
+        StaticHuffmanTable table = trained();
+        testMessage(table, new byte[0]);
+        testMessage(table, new byte[]{(byte)200});
+        // bytes which were not in the corpus still work
+        testMessage(table, randomData(300, false));
+        byte[] compressed = testMessage(table, weighedExponentialRandomData(300));
+        assertTrue(compressed.length < 100);
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        StaticHuffmanTable table = trained();
+        ByteArrayOutputStream outs = new ByteArrayOutputStream();
+        table.save(outs);
+        StaticHuffmanTable loaded = StaticHuffmanTable.load(new ByteArrayInputStream(outs.toByteArray()));
+        assertEquals(table.getId(), loaded.getId());
+
+        byte[] data = weighedExponentialRandomData(500);
+        outs = new ByteArrayOutputStream();
+        table.compressFile(new ByteArrayInputStream(data), outs);
+        InputStream ins = new ByteArrayInputStream(outs.toByteArray());
+        outs = new ByteArrayOutputStream();
+        loaded.decompressFile(ins, outs);
+        assertArrayEquals(data, outs.toByteArray());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongTable() throws IOException {
+        ByteArrayOutputStream outs = new ByteArrayOutputStream();
+        trained().compressFile(new ByteArrayInputStream(new byte[]{1, 2, 3}), outs);
+        StaticHuffmanTable other = StaticHuffmanTable.train(new ByteArrayInputStream(randomData(1000, true)));
+        other.decompressFile(new ByteArrayInputStream(outs.toByteArray()), new ByteArrayOutputStream());
+    }
+
+    @Test
+    public void testSharedBetweenThreads() throws Exception {
+        final StaticHuffmanTable table = trained();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Void>> results = new List<>();
+            for (int t = 0; t < 8; ++t) {
+                final int index = t;
+                results.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        for (int i = 0; i < 200; ++i) {
+                            testMessage(table, weighedExponentialRandomData(200 + index));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            // a failure in a thread is thrown here with its stack trace
+            for (int t = 0; t < results.size(); ++t) {
+                results.get(t).get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
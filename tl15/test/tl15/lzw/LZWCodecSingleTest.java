@@ -0,0 +1,98 @@
+package tl15.lzw;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import tl15.utils.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static tl15.utils.DataSources.randomData;
+import static tl15.utils.DataSources.weighedExponentialRandomData;
+
+/**
+ * Tests of LZWCodec which do not depend on the code size, so unlike those of
+ * the parameterized LZWCodecTest they are run only once.
+ */
+public class LZWCodecSingleTest {
+    @Test
+    public void testLRUChain() throws IOException {
+        // a run of one byte makes the whole dictionary one chain of
+        // prefixes, whose least recently used string is the one just output
+        byte[] data = new byte[100000];
+        ByteArrayOutputStream resetOuts = new ByteArrayOutputStream();
+        new LZWCodec(new LZWConfig().maxCodeSize(9)).compressFile(new ByteArrayInputStream(data), resetOuts);
+        LZWCodec lruCodec = new LZWCodec(new LZWConfig().maxCodeSize(9).lru(true));
+        ByteArrayOutputStream lruOuts = new ByteArrayOutputStream();
+        lruCodec.compressFile(new ByteArrayInputStream(data), lruOuts);
+        assertTrue(lruOuts.size() <= resetOuts.size());
+
+        LZWDictionary dict = lruCodec.getDictionary();
+        for (int code = 256; code < dict.getNextCode(); ++code) {
+            assertTrue(dict.getPrefix(code) != code);
+        }
+
+        ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        lruCodec.decompressFile(new ByteArrayInputStream(lruOuts.toByteArray()), decompressed);
+        assertArrayEquals(data, decompressed.toByteArray());
+    }
+
+    @Test
+    public void testChooseMaxCodeSize() throws IOException {
+        byte[] text = Files.readAllBytes(Paths.get("test/pg48138.txt"));
+        for (boolean lru : new boolean[]{false, true}) {
+            // nothing repeats in random data, so the shortest codes are best
+            ByteArrayInputStream random = new ByteArrayInputStream(randomData(100000, false));
+            assertEquals(9, LZWCodec.chooseMaxCodeSize(random, new LZWConfig().lru(lru), 2));
+            assertEquals(100000, random.available());
+
+            // text has lots of long repeated strings, so a big dictionary pays off
+            ByteArrayInputStream ins = new ByteArrayInputStream(text);
+            int codeSize = LZWCodec.chooseMaxCodeSize(ins, new LZWConfig().lru(lru), 3);
+            assertTrue(codeSize > 12);
+            ByteArrayOutputStream outs = new ByteArrayOutputStream();
+            new LZWCodec(new LZWConfig().maxCodeSize(codeSize).lru(lru)).compressFile(ins, outs);
+            ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+            new LZWCodec(new LZWConfig().maxCodeSize(codeSize)).decompressFile(new ByteArrayInputStream(outs.toByteArray()), decompressed);
+            assertArrayEquals(text, decompressed.toByteArray());
+        }
+    }
+
+    @Test
+    public void testParallelCodecs() throws Exception {
+        // codecs share no state, so each thread can use one of its own
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Void>> results = new List<>();
+            for (int t = 0; t < 8; ++t) {
+                final int index = t;
+                results.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        LZWCodec own = new LZWCodec(new LZWConfig().maxCodeSize(9 + index));
+                        for (int i = 0; i < 10; ++i) {
+                            byte[] data = weighedExponentialRandomData(50000 + index);
+                            ByteArrayOutputStream outs = new ByteArrayOutputStream();
+                            own.compressFile(new ByteArrayInputStream(data), outs);
+                            ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+                            own.decompressFile(new ByteArrayInputStream(outs.toByteArray()), decompressed);
+                            assertArrayEquals(data, decompressed.toByteArray());
+                        }
+                        return null;
+                    }
+                }));
+            }
+            // a failure in a thread is thrown here with its stack trace
+            for (int t = 0; t < results.size(); ++t) {
+                results.get(t).get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package tl15.lzw;
+
+import tl15.utils.BitInputStream;
+import tl15.utils.BitOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collection;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import static tl15.utils.DataSources.alternatingData;
+import static tl15.utils.DataSources.consecutiveData;
+import static tl15.utils.DataSources.randomData;
+import static tl15.utils.DataSources.weighedExponentialRandomData;
+import static tl15.utils.DataSources.weighedLinearRandomData;
+import static tl15.utils.Math.twoTo;
+
+@RunWith(Parameterized.class)
+public class LZWCodecTest {
+//    private final int bigSize = 10000;
+    private final int bigSize = 1000000;
+    
+    @Parameters
+    public static Collection<Object[]> parameters() {
+//       return Arrays.asList(new Object[][]{{9}, {10}, {11}, {12}, {16}, {20}});
+       return Arrays.asList(new Object[][]{{9}, {12}, {16}});
+//       return Arrays.asList(new Object[][]{{10}});
+    }
+    
+    private final LZWCodec codec;
+
+    public LZWCodecTest(int codeSize) {
+        codec = new LZWCodec(new LZWConfig().maxCodeSize(codeSize));
+    }
+
+    private void testCompress(int[] expected, byte[] data) throws IOException {
+        ByteArrayOutputStream outs = new ByteArrayOutputStream();
+        BitOutputStream bouts = new BitOutputStream(outs);
+        codec.compress(new ByteArrayInputStream(data), bouts);
+        bouts.flush();
+        BitInputStream bins = new BitInputStream(new ByteArrayInputStream(outs.toByteArray()));
+        int curCodeSize = 9;
+        for (int i : expected) {
+            Integer next = bins.readBits(curCodeSize);
+            if (next == twoTo(curCodeSize) - 2) {
+                ++curCodeSize;
+            } else if (next == twoTo(curCodeSize) - 1) {
+                curCodeSize = 9;
+            }
+            assertNotNull(next);
+            assertEquals(i, (int)next);
+        }
+    }
+    
+    @Test
+    public void testCompress() throws IOException {
+        testCompress(new int[]{0,1,256,258}, new byte[]{0,1,0,1,0,1,0});
+        testCompress(new int[]{}, new byte[]{});
+        testCompress(new int[]{1}, new byte[]{1});
+        testCompress(new int[]{1,1}, new byte[]{1,1});
+        testCompress(new int[]{1,256}, new byte[]{1,1,1});
+        testCompress(new int[]{1,256,257,258}, new byte[]{1,1,1,1,1,1,1,1,1,1});
+        testCompress(new int[]{0,1,2,3,258,4,3,5,4,257,3}, new byte[]{0,1,2,3,2,3,4,3,5,4,1,2,3});
+        testCompress(new int[]{0,1,2,3,4,5,6,7,8,9}, new byte[]{0,1,2,3,4,5,6,7,8,9});
+        testCompress(new int[]{1,0,256,258,257,260,258}, new byte[]{1,0,1,0,1,0,1,0,1,0,1,0,1,0,1});
+    }
+
+
+    public void testDecompress(byte[] data) throws IOException {
+        InputStream ins = new ByteArrayInputStream(data);
+        ByteArrayOutputStream outs = new ByteArrayOutputStream();
+        BitOutputStream bouts = new BitOutputStream(outs);
+        codec.compress(ins, bouts);
+        bouts.flush();
+        ins = new ByteArrayInputStream(outs.toByteArray());
+        outs = new ByteArrayOutputStream();
+        codec.decompress(new BitInputStream(ins), outs);
+        assertArrayEquals(data, outs.toByteArray());
+    }
+
+    public void testDecompressFile(byte[] data) throws IOException {
+        ByteArrayInputStream ins = new ByteArrayInputStream(data);
+        ByteArrayOutputStream outs = new ByteArrayOutputStream();
+        codec.compressFile(ins, outs);
+        ins = new ByteArrayInputStream(outs.toByteArray());
+        outs = new ByteArrayOutputStream();
+        codec.decompressFile(ins, outs);
+        assertArrayEquals(data, outs.toByteArray());
+    }
+
+    @Test
+    public void testDecompress() throws IOException {
+        testDecompress(new byte[]{});
+        testDecompress(new byte[]{1});
+        testDecompress(new byte[]{1,1});
+        testDecompress(new byte[]{1,1,1});
+        testDecompress(new byte[]{1,1,1,1,1});      // 5 is the magic bug number
+        testDecompress(new byte[]{1,1,1,1,1,1,1,1,1,1});
+        testDecompress(new byte[]{1,2,1,1,2});
+        testDecompress(new byte[]{0,1,0,1,0,1,0});
+        testDecompress(new byte[]{0,1,2,3,2,3,4,3,5,4,1,2,3});
+        testDecompress(new byte[]{0,1,2,3,4,5,6,7,8,9});
+        System.out.println("Random " + bigSize);
+        testDecompress(randomData(bigSize, false));
+        System.out.println("Random " + bigSize + ", nonnegative");
+        testDecompress(randomData(bigSize, true));
+        System.out.println("Consecutive " + bigSize);
+        testDecompress(consecutiveData(bigSize));
+        System.out.println("Alternating " + bigSize);
+        testDecompress(alternatingData(bigSize));
+        System.out.println("Weighed linear " + bigSize);
+        testDecompress(weighedLinearRandomData(bigSize));
+        System.out.println("Weighed exponential " + bigSize);
+        testDecompress(weighedExponentialRandomData(bigSize));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadCode() throws IOException {
+        // 257 cannot follow 1: the next code to be added is 256
+        ByteArrayOutputStream outs = new ByteArrayOutputStream();
+        BitOutputStream bouts = new BitOutputStream(outs);
+        bouts.writeBits(9, 1);
+        bouts.writeBits(9, 257);
+        bouts.flush();
+        BitInputStream bins = new BitInputStream(new ByteArrayInputStream(outs.toByteArray()));
+        codec.decompress(bins, new ByteArrayOutputStream());
+    }
+
+    @Test
+    public void testDecompressFile() throws IOException {
+        testDecompressFile(randomData(bigSize, false));
+    }
+
+    @Test
+    public void testReuse() throws IOException {
+        byte[] data = weighedLinearRandomData(100000);
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        codec.compressFile(new ByteArrayInputStream(data), first);
+        testDecompressFile(consecutiveData(100000));
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        codec.compressFile(new ByteArrayInputStream(data), second);
+        assertArrayEquals(first.toByteArray(), second.toByteArray());
+        testDecompressFile(data);
+    }
+
+    @Test
+    public void testResetThreshold() throws IOException {
+        byte[] text = Arrays.copyOf(Files.readAllBytes(Paths.get("test/pg48138.txt")), bigSize);
+        byte[] data = new byte[2 * bigSize];
+        System.arraycopy(text, 0, data, 0, bigSize);
+        System.arraycopy(randomData(bigSize, false), 0, data, bigSize, bigSize);
+        testDecompressFile(data);
+        int resetsWhenFull = codec.getResetCount();
+        ByteArrayOutputStream whenFullOuts = new ByteArrayOutputStream();
+        codec.compressFile(new ByteArrayInputStream(data), whenFullOuts);
+
+        LZWCodec monitoring = new LZWCodec(new LZWConfig().maxCodeSize(codec.getMaxCodeSize()).resetThreshold(1));
+        // compressing the text alone resets the dictionary exactly where the
+        // first half of data does
+        monitoring.compressFile(new ByteArrayInputStream(text), new ByteArrayOutputStream());
+        int textResets = monitoring.getResetCount();
+        ByteArrayOutputStream outs = new ByteArrayOutputStream();
+        monitoring.compressFile(new ByteArrayInputStream(data), outs);
+        assertTrue(monitoring.getResetCount() <= resetsWhenFull);
+        assertTrue(outs.size() < whenFullOuts.size());
+        // the dictionary of the text is bad for the random data, so it is
+        // reset after the switch
+        assertTrue(monitoring.getResetCount() > textResets);
+        ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        codec.decompressFile(new ByteArrayInputStream(outs.toByteArray()), decompressed);
+        assertArrayEquals(data, decompressed.toByteArray());
+    }
+
+    @Test
+    public void testLRU() throws IOException {
+        LZWCodec lruCodec = new LZWCodec(new LZWConfig().maxCodeSize(codec.getMaxCodeSize()).lru(true));
+        byte[][] inputs = {
+            new byte[]{},
+            new byte[]{1,1,1,1,1},
+            randomData(bigSize, false),
+            weighedLinearRandomData(bigSize),
+            weighedExponentialRandomData(bigSize),
+            alternatingData(bigSize),
+        };
+        for (byte[] data : inputs) {
+            ByteArrayOutputStream outs = new ByteArrayOutputStream();
+            lruCodec.compressFile(new ByteArrayInputStream(data), outs);
+            assertEquals(0, lruCodec.getResetCount());
+            ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+            codec.decompressFile(new ByteArrayInputStream(outs.toByteArray()), decompressed);
+            assertArrayEquals(data, decompressed.toByteArray());
+        }
+    }
+
+    private void testChunks(LZWCodec chunkCodec, byte[] data, int chunkSize) throws IOException {
+        ByteArrayOutputStream outs = new ByteArrayOutputStream();
+        chunkCodec.compressFileParallel(new ByteArrayInputStream(data), outs, chunkSize, 3);
+        ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        codec.decompressFile(new ByteArrayInputStream(outs.toByteArray()), decompressed);
+        assertArrayEquals(data, decompressed.toByteArray());
+    }
+
+    @Test
+    public void testChunks() throws IOException {
+        LZWCodec lruCodec = new LZWCodec(new LZWConfig().maxCodeSize(codec.getMaxCodeSize()).lru(true));
+        testChunks(codec, new byte[]{}, 1000);
+        testChunks(codec, new byte[]{1,1,1,1,1}, 1000);
+        testChunks(codec, consecutiveData(3000), 1000);
+        testChunks(codec, weighedLinearRandomData(bigSize), 1000);
+        testChunks(codec, weighedLinearRandomData(bigSize), 65536);
+        testChunks(lruCodec, weighedExponentialRandomData(bigSize), 65536);
+    }
+
+    @Test
+    public void testFixedWidth() throws IOException {
+        byte[][] inputs = {
+            new byte[]{},
+            new byte[]{1},
+            new byte[]{1,2},
+            new byte[]{1,2,3},
+            randomData(bigSize, false),
+            weighedExponentialRandomData(bigSize),
+        };
+        for (int codeSize : new int[]{12, 16}) {
+            for (boolean lru : new boolean[]{false, true}) {
+                LZWCodec fixedCodec = new LZWCodec(new LZWConfig().maxCodeSize(codeSize).lru(lru).codeFormat(LZWConfig.CodeFormat.FIXED_WIDTH));
+                for (byte[] data : inputs) {
+                    ByteArrayOutputStream outs = new ByteArrayOutputStream();
+                    fixedCodec.compressFile(new ByteArrayInputStream(data), outs);
+                    ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+                    codec.decompressFile(new ByteArrayInputStream(outs.toByteArray()), decompressed);
+                    assertArrayEquals(data, decompressed.toByteArray());
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadFixedWidth() {
+        new LZWCodec(new LZWConfig().maxCodeSize(14).codeFormat(LZWConfig.CodeFormat.FIXED_WIDTH));
+    }
+
+    @Test
+    public void testHuffman() throws IOException {
+        byte[][] inputs = {
+            new byte[]{},
+            new byte[]{1},
+            new byte[]{1,2,3},
+            // more codes than in one block
+            randomData(bigSize, false),
+            weighedExponentialRandomData(bigSize),
+        };
+        assertTrue(bigSize > LZWHuffmanWriter.blockSize);
+        for (int codeSize : new int[]{9, 12, 16}) {
+            for (boolean lru : new boolean[]{false, true}) {
+                LZWCodec huffmanCodec = new LZWCodec(new LZWConfig().maxCodeSize(codeSize).lru(lru).codeFormat(LZWConfig.CodeFormat.HUFFMAN));
+                LZWCodec plainCodec = new LZWCodec(new LZWConfig().maxCodeSize(codeSize).lru(lru));
+                for (byte[] data : inputs) {
+                    ByteArrayOutputStream outs = new ByteArrayOutputStream();
+                    huffmanCodec.compressFile(new ByteArrayInputStream(data), outs);
+                    ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+                    codec.decompressFile(new ByteArrayInputStream(outs.toByteArray()), decompressed);
+                    assertArrayEquals(data, decompressed.toByteArray());
+
+                    // plain codes are used when Huffman codes do not pay off,
+                    // so only the headers of the blocks are extra
+                    ByteArrayOutputStream plainOuts = new ByteArrayOutputStream();
+                    plainCodec.compressFile(new ByteArrayInputStream(data), plainOuts);
+                    assertTrue(outs.size() <= plainOuts.size() + 5 + 6 * (data.length / LZWHuffmanWriter.blockSize + 1));
+                }
+            }
+        }
+
+        // the single characters of skewed data are used very unevenly
+        byte[] data = inputs[4];
+        ByteArrayOutputStream huffmanOuts = new ByteArrayOutputStream();
+        new LZWCodec(new LZWConfig().maxCodeSize(9).codeFormat(LZWConfig.CodeFormat.HUFFMAN)).compressFile(new ByteArrayInputStream(data), huffmanOuts);
+        ByteArrayOutputStream plainOuts = new ByteArrayOutputStream();
+        new LZWCodec(new LZWConfig().maxCodeSize(9)).compressFile(new ByteArrayInputStream(data), plainOuts);
+        assertTrue(huffmanOuts.size() < 0.9 * plainOuts.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadHuffman() {
+        new LZWCodec(new LZWConfig().maxCodeSize(17).codeFormat(LZWConfig.CodeFormat.HUFFMAN));
+    }
+
+    @Test
+    public void weirdBug() throws UnsupportedEncodingException, IOException {
+        String data = "#LyX 2.1 created this file. For more info see http://www.lyx.org/\n" +
+                        "\\lyxformat 474\n" +
+                        "\\begin_document\n" +
+                        "\\begin_header\n" +
+                        "\\textclass scrbook\n" +
+                        "\\begin_preamble\n" +
+                        "% For XeTeX %%%%%%%%%%%\n" +
+                        "%\\usepackage{fontspec}\n" +
+                        "%\\usepackage{xunicode}\n" +
+                        "%\\usepackage{xltxtra}\n" +
+                        "%%%%%%%%%%%%%%%%%%";
+        byte[] bytes = data.getBytes("UTF-8");
+        testDecompress(bytes);
+    }
+
+    @Test
+    public void weirdBug2() throws UnsupportedEncodingException, IOException {
+        String data = "%%%%%";
+        byte[] bytes = data.getBytes("UTF-8");
+        testDecompress(bytes);
+    }
+
+    @Test
+    public void weirdBug3() throws UnsupportedEncodingException, IOException {
+        FileInputStream ins = new FileInputStream("test/pg48138.txt");
+        ByteArrayOutputStream outs = new ByteArrayOutputStream();
+        int b;
+        while ((b = ins.read()) != -1) {
+            outs.write(b);
+        }
+        ins.close();
+        testDecompressFile(outs.toByteArray());
+    }
+}
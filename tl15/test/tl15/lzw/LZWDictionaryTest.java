@@ -0,0 +1,93 @@
+package tl15.lzw;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LZWDictionaryTest {
+    @Test
+    public void testTraverse() {
+        LZWDictionary dict = new LZWDictionary();
+        assertFalse(dict.isTraversing());
+        assertTrue(dict.hasNextChar(7));
+        dict.advance(7);
+        assertTrue(dict.isTraversing());
+        assertEquals(7, dict.getCurrentCode());
+        assertFalse(dict.hasNextChar(8));
+        dict.add(8);
+        assertEquals(257, dict.getNextCode());
+        assertTrue(dict.hasNextChar(8));
+        dict.advance(8);
+        assertEquals(256, dict.getCurrentCode());
+
+        dict.reset();
+        assertFalse(dict.isTraversing());
+        assertEquals(256, dict.getNextCode());
+        dict.advance(7);
+        assertFalse(dict.hasNextChar(8));
+    }
+
+    @Test
+    public void testGrow() {
+        // a chain of strings 0, 00, 000, ... and 1, 01, 001, ... much longer
+        // than the initial size of the hash table
+        int count = 100000;
+        LZWDictionary dict = new LZWDictionary();
+        dict.advance(0);
+        for (int i = 0; i < count; ++i) {
+            dict.add(1);
+            dict.add(0);
+            dict.advance(0);
+        }
+        dict.restartTraverse();
+        dict.advance(0);
+        for (int i = 0; i < count; ++i) {
+            assertTrue(dict.hasNextChar(1));
+            assertTrue(dict.hasNextChar(0));
+            dict.advance(0);
+            assertEquals(256 + 2 * i + 1, dict.getCurrentCode());
+        }
+        assertFalse(dict.hasNextChar(0));
+        assertEquals(256 + 2 * count, dict.getNextCode());
+    }
+
+    @Test
+    public void testRemove() {
+        // the strings 0c for every character c
+        LZWDictionary dict = new LZWDictionary();
+        for (int c = 0; c < 256; ++c) {
+            dict.restartTraverse();
+            dict.advance(0);
+            dict.add(c);
+        }
+        for (int code = 256; code < 512; code += 2) {
+            assertEquals(0, dict.getPrefix(code));
+            dict.remove(code);
+        }
+        dict.restartTraverse();
+        dict.advance(0);
+        for (int c = 0; c < 256; ++c) {
+            assertEquals(c % 2 == 1, dict.hasNextChar(c));
+        }
+        dict.add(2, 258);
+        assertTrue(dict.hasNextChar(2));
+        dict.advance(2);
+        assertEquals(258, dict.getCurrentCode());
+    }
+
+    @Test
+    public void testManyResets() {
+        // enough resets to make the generations wrap around
+        LZWDictionary dict = new LZWDictionary();
+        for (int i = 0; i < (1 << 24) + 10; ++i) {
+            dict.advance(1);
+            if (i % 1000 == 0) {
+                assertFalse(dict.hasNextChar(2));
+                dict.add(2);
+                assertTrue(dict.hasNextChar(2));
+            }
+            dict.reset();
+        }
+        dict.advance(1);
+        assertFalse(dict.hasNextChar(2));
+    }
+}
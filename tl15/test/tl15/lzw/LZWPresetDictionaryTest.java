@@ -0,0 +1,130 @@
+package tl15.lzw;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import static tl15.utils.DataSources.randomData;
+import static tl15.utils.DataSources.weighedExponentialRandomData;
+
+public class LZWPresetDictionaryTest {
+    /**
+     * @return The text of the test file.
+     */
+    private static byte[] text() throws IOException {
+        try (InputStream ins = new FileInputStream("test/pg48138.txt")) {
+            ByteArrayOutputStream outs = new ByteArrayOutputStream();
+            byte[] buffer = new byte[65536];
+            int n;
+            while ((n = ins.read(buffer)) != -1) {
+                outs.write(buffer, 0, n);
+            }
+            return outs.toByteArray();
+        }
+    }
+
+    /**
+     * @return A dictionary trained from the first half of the text.
+     */
+    private static LZWPresetDictionary trained(int maxStrings) throws IOException {
+        byte[] text = text();
+        return LZWPresetDictionary.train(new ByteArrayInputStream(text, 0, text.length / 2), maxStrings);
+    }
+
+    private static byte[] testMessage(LZWCodec codec, byte[] message) throws IOException {
+        ByteArrayOutputStream outs = new ByteArrayOutputStream();
+        codec.compressFile(new ByteArrayInputStream(message), outs);
+        byte[] compressed = outs.toByteArray();
+        outs = new ByteArrayOutputStream();
+        codec.decompressFile(new ByteArrayInputStream(compressed), outs);
+        assertArrayEquals(message, outs.toByteArray());
+        return compressed;
+    }
+
+    @Test
+    public void testTrain() throws IOException {
+        LZWPresetDictionary preset = trained(1000);
+        assertEquals(1000, preset.size());
+        for (int i = 0; i < preset.size(); ++i) {
+            assertTrue(preset.getPrefixes()[i] < 256 + i);
+        }
+        // only the string 12 is gone through in the parse of 121212
+        assertEquals(1, LZWPresetDictionary.train(new ByteArrayInputStream(new byte[]{1, 2, 1, 2, 1, 2}), 1000).size());
+    }
+
+    @Test
+    public void testMessages() throws IOException {
+        LZWPresetDictionary preset = trained(1792);
+        LZWCodec plain = new LZWCodec(new LZWConfig().maxCodeSize(12));
+        LZWCodec withPreset = new LZWCodec(new LZWConfig().preset(preset));
+        LZWCodec lruWithPreset = new LZWCodec(new LZWConfig().lru(true).preset(preset));
+        testMessage(withPreset, new byte[0]);
+        testMessage(withPreset, new byte[]{(byte)200});
+        testMessage(lruWithPreset, randomData(3000, false));
+        testMessage(lruWithPreset, weighedExponentialRandomData(100000));
+        testMessage(withPreset, weighedExponentialRandomData(100000));
+
+        // messages from the half of the text which was not trained on
+        byte[] text = text();
+        for (int start = text.length / 2; start + 1000 < text.length; start += 10000) {
+            byte[] message = Arrays.copyOfRange(text, start, start + 1000);
+            int compressed = testMessage(withPreset, message).length;
+            assertTrue(compressed < testMessage(plain, message).length);
+            assertEquals(compressed, testMessage(lruWithPreset, message).length);
+        }
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        LZWPresetDictionary preset = trained(500);
+        ByteArrayOutputStream outs = new ByteArrayOutputStream();
+        preset.save(outs);
+        LZWPresetDictionary loaded = LZWPresetDictionary.load(new ByteArrayInputStream(outs.toByteArray()));
+        assertEquals(preset.getId(), loaded.getId());
+        assertArrayEquals(preset.getPrefixes(), loaded.getPrefixes());
+        assertArrayEquals(preset.getCharacters(), loaded.getCharacters());
+    }
+
+    @Test
+    public void testChunks() throws IOException {
+        LZWCodec codec = new LZWCodec(new LZWConfig().preset(trained(1000)));
+        byte[] data = weighedExponentialRandomData(100000);
+        ByteArrayOutputStream outs = new ByteArrayOutputStream();
+        codec.compressFileParallel(new ByteArrayInputStream(data), outs, 4096, 2);
+        ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        codec.decompressFile(new ByteArrayInputStream(outs.toByteArray()), decompressed);
+        assertArrayEquals(data, decompressed.toByteArray());
+    }
+
+    @Test
+    public void testSameCodecWithAndWithout() throws IOException {
+        // the decoder must not mix up the preset strings with the ones of a
+        // file compressed without them
+        LZWCodec codec = new LZWCodec(new LZWConfig().preset(trained(1000)));
+        byte[] data = weighedExponentialRandomData(10000);
+        ByteArrayOutputStream outs = new ByteArrayOutputStream();
+        new LZWCodec(new LZWConfig().maxCodeSize(12)).compressFile(new ByteArrayInputStream(data), outs);
+        testMessage(codec, data);
+        ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        codec.decompressFile(new ByteArrayInputStream(outs.toByteArray()), decompressed);
+        assertArrayEquals(data, decompressed.toByteArray());
+        testMessage(codec, data);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongDictionary() throws IOException {
+        ByteArrayOutputStream outs = new ByteArrayOutputStream();
+        new LZWCodec(new LZWConfig().preset(trained(1000))).compressFile(new ByteArrayInputStream(new byte[]{1, 2, 3}), outs);
+        LZWCodec other = new LZWCodec(new LZWConfig().preset(trained(999)));
+        other.decompressFile(new ByteArrayInputStream(outs.toByteArray()), new ByteArrayOutputStream());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooBig() throws IOException {
+        new LZWCodec(new LZWConfig().maxCodeSize(9).preset(trained(1000)));
+    }
+}
@@ -4,7 +4,11 @@ import tl15.utils.BitInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Random;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import org.junit.Test;
 
 /**
@@ -87,4 +91,118 @@ public class BitInputStreamTest {
         BitInputStream bins = new BitInputStream(ins);
         assertEquals((Integer)255, bins.readBits(8));
     }
+
+    @Test
+    public void testPeekAndConsume() throws Exception {
+        byte[] data = new byte[]{0b01101001, 0b00011010};
+        BitInputStream bins = new BitInputStream(new ByteArrayInputStream(data));
+        assertEquals(0b0110, bins.peekBits(4));
+        assertEquals(0b011010010, bins.peekBits(9));
+        bins.consumeBits(3);
+        assertEquals((Integer)0b01001, bins.readBits(5));
+        assertEquals(0b0001101, bins.peekBits(7));
+        bins.consumeBits(4);
+        // past the end the stream is padded with zeroes
+        assertEquals(0b1010000, bins.peekBits(7));
+        bins.consumeBits(4);
+        assertEquals(0, bins.peekBits(5));
+        assertEquals(null, bins.readBits(1));
+    }
+
+    @Test
+    public void testReadBitsInt() throws IOException {
+        byte[] data = new byte[]{0b01101001, 0b00011010, -1};
+        BitInputStream bins = new BitInputStream(new ByteArrayInputStream(data));
+        assertFalse(bins.isEOF());
+        assertEquals(0b0110, bins.readBitsInt(4));
+        assertEquals(20, bins.bitsRemaining(32));
+        assertEquals(5, bins.bitsRemaining(5));
+        assertEquals(0b1001000110101111, bins.readBitsInt(16));
+        assertEquals(4, bins.bitsRemaining(32));
+        assertEquals(0b1111, bins.readBitsInt(4));
+        assertTrue(bins.isEOF());
+        assertEquals(0, bins.bitsRemaining(32));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testReadBitsIntPastEnd() throws IOException {
+        BitInputStream bins = new BitInputStream(new ByteArrayInputStream(new byte[]{1}));
+        bins.readBitsInt(9);
+    }
+
+    /**
+     * An input stream which returns at most a few bytes at a time.
+     */
+    private static class TrickleInputStream extends ByteArrayInputStream {
+        private final Random r = new Random(3);
+
+        TrickleInputStream(byte[] data) {
+            super(data);
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, 1 + r.nextInt(10)));
+        }
+    }
+
+    @Test
+    public void testMixedReads() throws IOException {
+        // bits of all widths and byte arrays, aligned and not, across many
+        // buffers, from streams which return all or only a few bytes at once
+        Random r = new Random(5);
+        byte[] data = new byte[200000];
+        r.nextBytes(data);
+        for (InputStream ins : new InputStream[]{new ByteArrayInputStream(data), new TrickleInputStream(data)}) {
+            BitInputStream bins = new BitInputStream(ins);
+            long bit = 0;
+            while (bit < 8L * data.length) {
+                if (r.nextInt(10) == 0) {
+                    if (r.nextBoolean()) {
+                        bins.skipToByteBoundary();
+                        bit = (bit + 7) / 8 * 8;
+                    }
+                    byte[] bytes = new byte[r.nextBoolean()? r.nextInt(50) : r.nextInt(40000)];
+                    int n = bins.read(bytes, 0, bytes.length);
+                    if (bit == 8L * data.length) {
+                        assertEquals((bytes.length == 0)? 0 : -1, n);
+                        break;
+                    }
+                    if (bytes.length == 0) {
+                        assertEquals(0, n);
+                        continue;
+                    }
+                    assertTrue(n > 0);
+                    for (int i = 0; i < n; ++i) {
+                        assertEquals(expectedBits(data, bit, 8), bytes[i] & 0xff);
+                        bit += 8;
+                    }
+                    if (n < bytes.length && bit % 8 != 0) {
+                        // the bits after the last whole byte are lost
+                        break;
+                    }
+                } else {
+                    int n = r.nextInt(33);
+                    if (bins.bitsRemaining(n) < n) {
+                        assertTrue(bit + n > 8L * data.length);
+                        assertEquals(8L * data.length - bit, bins.bitsRemaining(n));
+                        break;
+                    }
+                    assertEquals(expectedBits(data, bit, n), bins.readBitsInt(n));
+                    bit += n;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The n bits of data starting at the given bit.
+     */
+    private static int expectedBits(byte[] data, long bit, int n) {
+        int result = 0;
+        for (long i = bit; i < bit + n; ++i) {
+            result = (result << 1) | ((data[(int)(i / 8)] >>> (7 - i % 8)) & 1);
+        }
+        return result;
+    }
 }
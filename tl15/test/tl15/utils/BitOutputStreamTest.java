@@ -6,6 +6,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.BitSet;
 import java.util.Random;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
@@ -87,6 +88,48 @@ public class BitOutputStreamTest {
         assertEquals(0b00011010, outs.toByteArray()[1]);
     }
 
+    @Test
+    public void testLongBits() throws IOException {
+        ByteArrayOutputStream outs = new ByteArrayOutputStream();
+        BitOutputStream bouts = new BitOutputStream(outs);
+        bouts.writeBits(4, 0b1010L);
+        bouts.writeBits(44, 0x123456789abL);
+        bouts.writeBits(64, -1L);
+        bouts.flush();
+        assertEquals(112, bouts.getBitCount());
+        BitInputStream bins = new BitInputStream(new ByteArrayInputStream(outs.toByteArray()));
+        assertEquals((Integer)0b1010, bins.readBits(4));
+        assertEquals((Integer)0x123, bins.readBits(12));
+        assertEquals((Integer)0x456789ab, bins.readBits(32));
+        assertEquals((Integer)(-1), bins.readBits(32));
+        assertEquals((Integer)(-1), bins.readBits(32));
+    }
+
+    @Test
+    public void testByteBoundary() throws IOException {
+        ByteArrayOutputStream outs = new ByteArrayOutputStream();
+        BitOutputStream bouts = new BitOutputStream(outs);
+        bouts.writeBits(3, 0b101);
+        bouts.padToByteBoundary();
+        bouts.write(new byte[]{1, 2, 3}, 0, 3);
+        bouts.writeBits(4, 0b1111);
+        bouts.write(new byte[]{4}, 0, 1);
+        bouts.flush();
+        assertEquals(44, bouts.getBitCount());
+        assertArrayEquals(new byte[]{(byte)0b10100000, 1, 2, 3, (byte)0b11110000, 0b01000000}, outs.toByteArray());
+
+        BitInputStream bins = new BitInputStream(new ByteArrayInputStream(outs.toByteArray()));
+        assertEquals((Integer)0b10, bins.readBits(2));
+        bins.skipToByteBoundary();
+        byte[] bytes = new byte[3];
+        assertEquals(3, bins.read(bytes, 0, 3));
+        assertArrayEquals(new byte[]{1, 2, 3}, bytes);
+        assertEquals((Integer)0b1111, bins.readBits(4));
+        assertEquals(1, bins.read(bytes, 0, 1));
+        assertEquals(0b00000100, bytes[0]);
+        assertEquals(-1, bins.read(bytes, 0, 1));
+    }
+
     @Test
     public void testRandom() throws IOException {
         Random r = new Random(42);
@@ -113,4 +156,46 @@ public class BitOutputStreamTest {
         bouts.flush();
         assertArrayEquals(data, outs.toByteArray());
     }
+
+    @Test
+    public void testMixedWrites() throws IOException {
+        // bits of all widths and byte arrays, aligned and not, big and small,
+        // across many buffers
+        Random r = new Random(7);
+        ByteArrayOutputStream outs = new ByteArrayOutputStream();
+        BitOutputStream bouts = new BitOutputStream(outs);
+        BitSet expected = new BitSet();
+        long bit = 0;
+        for (int i = 0; i < 2000; ++i) {
+            int op = r.nextInt(10);
+            if (op == 0) {
+                byte[] bytes = new byte[r.nextBoolean()? r.nextInt(50) : r.nextInt(40000)];
+                r.nextBytes(bytes);
+                if (r.nextBoolean()) {
+                    bouts.padToByteBoundary();
+                    bit = (bit + 7) / 8 * 8;
+                }
+                bouts.write(bytes, 0, bytes.length);
+                for (byte b : bytes) {
+                    for (int j = 7; j >= 0; --j) {
+                        expected.set((int)bit++, ((b >>> j) & 1) != 0);
+                    }
+                }
+            } else {
+                int n = r.nextInt(65);
+                long bits = r.nextLong();
+                bouts.writeBits(n, bits);
+                for (int j = n - 1; j >= 0; --j) {
+                    expected.set((int)bit++, ((bits >>> j) & 1) != 0);
+                }
+            }
+            assertEquals(bit, bouts.getBitCount());
+        }
+        bouts.flush();
+        byte[] result = outs.toByteArray();
+        assertEquals((bit + 7) / 8, result.length);
+        for (int i = 0; i < bit; ++i) {
+            assertEquals(expected.get(i), ((result[i / 8] >>> (7 - i % 8)) & 1) != 0);
+        }
+    }
 }
@@ -0,0 +1,72 @@
+package tl15.utils;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LargeArrayTest {
+    /** Enough elements to be off the heap for any element size. */
+    private final long offHeapLength = 3 << 20;
+
+    @Test
+    public void testLongs() {
+        for (long length : new long[]{10, offHeapLength}) {
+            LargeArray a = new LargeArray(length, 8);
+            assertEquals(length, a.length());
+            assertEquals(0, a.getLong(length - 1));
+            a.putLong(0, -1);
+            a.putLong(length - 1, 0x123456789abcdefL);
+            assertEquals(-1, a.getLong(0));
+            assertEquals(0x123456789abcdefL, a.getLong(length - 1));
+            assertEquals(0, a.getLong(1));
+        }
+    }
+
+    @Test
+    public void testInts() {
+        for (long length : new long[]{10, offHeapLength}) {
+            LargeArray a = new LargeArray(length, 4);
+            a.putInt(1, Integer.MIN_VALUE);
+            a.putInt(length - 1, 7);
+            assertEquals(0, a.getInt(0));
+            assertEquals(Integer.MIN_VALUE, a.getInt(1));
+            assertEquals(7, a.getInt(length - 1));
+        }
+    }
+
+    @Test
+    public void testBytes() {
+        for (long length : new long[]{10, offHeapLength}) {
+            LargeArray a = new LargeArray(length, 1);
+            a.putByte(length - 1, (byte)200);
+            assertEquals((byte)200, a.getByte(length - 1));
+            assertEquals(0, a.getByte(length - 2));
+        }
+    }
+
+    @Test
+    public void testCopyOf() {
+        // on the heap, from the heap off it, off it and back to the heap
+        LargeArray a = new LargeArray(1000, 4);
+        for (int i = 0; i < 1000; ++i) {
+            a.putInt(i, i * i);
+        }
+        LargeArray b = a.copyOf(2000);
+        LargeArray c = b.copyOf(offHeapLength);
+        LargeArray d = c.copyOf(offHeapLength + 1);
+        LargeArray e = d.copyOf(500);
+        for (LargeArray copy : new LargeArray[]{b, c, d}) {
+            for (int i = 0; i < 1000; ++i) {
+                assertEquals(i * i, copy.getInt(i));
+            }
+            assertEquals(0, copy.getInt(1000));
+            assertEquals(0, copy.getInt(copy.length() - 1));
+        }
+        assertEquals(500, e.length());
+        assertEquals(499 * 499, e.getInt(499));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadElementSize() {
+        new LargeArray(10, 2);
+    }
+}
@@ -0,0 +1,86 @@
+package tl15.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class MappedInputStreamTest {
+    private static File tempFile(byte[] data) throws IOException {
+        File file = File.createTempFile("mapped", null);
+        file.deleteOnExit();
+        try (FileOutputStream outs = new FileOutputStream(file)) {
+            outs.write(data);
+        }
+        return file;
+    }
+
+    @Test
+    public void testRead() throws IOException {
+        byte[] data = new byte[10000];
+        new Random(1).nextBytes(data);
+        File file = tempFile(data);
+        // small windows make the reads cross them
+        for (int windowSize : new int[]{1 << 30, 1000, 7}) {
+            try (MappedInputStream ins = new MappedInputStream(new RandomAccessFile(file, "r").getChannel(), windowSize)) {
+                assertEquals(data.length, ins.available());
+                assertEquals(data[0] & 0xff, ins.read());
+                byte[] bytes = new byte[data.length];
+                int read = 1;
+                while (read < data.length) {
+                    int n = ins.read(bytes, read, 3000);
+                    assertTrue(n > 0);
+                    read += n;
+                }
+                bytes[0] = data[0];
+                assertArrayEquals(data, bytes);
+                assertEquals(data.length, ins.position());
+                assertEquals(-1, ins.read());
+                assertEquals(-1, ins.read(bytes, 0, 1));
+                assertEquals(0, ins.read(bytes, 0, 0));
+            }
+        }
+    }
+
+    @Test
+    public void testMarkAndReset() throws IOException {
+        byte[] data = new byte[5000];
+        new Random(2).nextBytes(data);
+        File file = tempFile(data);
+        try (MappedInputStream ins = new MappedInputStream(new RandomAccessFile(file, "r").getChannel(), 1024)) {
+            assertTrue(ins.markSupported());
+            assertEquals(100, ins.skip(100));
+            ins.mark(1);
+            // the mark holds however far the stream is read
+            assertEquals(4000, ins.skip(4000));
+            assertEquals(data[4100] & 0xff, ins.read());
+            ins.reset();
+            assertEquals(100, ins.position());
+            assertEquals(data[100] & 0xff, ins.read());
+            assertEquals(4899, ins.skip(10000));
+            assertEquals(0, ins.available());
+            ins.seek(2);
+            assertEquals(data[2] & 0xff, ins.read());
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        File file = tempFile(new byte[0]);
+        try (MappedInputStream ins = new MappedInputStream(new RandomAccessFile(file, "r").getChannel())) {
+            assertEquals(0, ins.available());
+            assertEquals(-1, ins.read());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadSeek() throws IOException {
+        File file = tempFile(new byte[10]);
+        try (MappedInputStream ins = new MappedInputStream(new RandomAccessFile(file, "r").getChannel())) {
+            ins.seek(11);
+        }
+    }
+}